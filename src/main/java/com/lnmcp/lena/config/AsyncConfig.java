@@ -1,11 +1,14 @@
 package com.lnmcp.lena.config;
 
+import com.lnmcp.lena.util.ExtractionExecutor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Configuration for asynchronous processing.
@@ -27,4 +30,18 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    /**
+     * Configure the bounded pool for blocking document and table extraction, kept apart
+     * from the common ForkJoinPool used by parallel streams
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExtractionExecutor extractionExecutor(
+            @Value("${mcp.extraction.threads:4}") int threads,
+            @Value("${mcp.extraction.queue-capacity:64}") int queueCapacity,
+            @Value("${mcp.extraction.task-timeout-seconds:120}") long taskTimeoutSeconds,
+            @Value("${mcp.extraction.stats-log-seconds:300}") long statsLogSeconds) {
+        return new ExtractionExecutor("MCP-Extraction", threads, queueCapacity,
+                TimeUnit.SECONDS.toMillis(taskTimeoutSeconds), TimeUnit.SECONDS.toMillis(statsLogSeconds));
+    }
+}
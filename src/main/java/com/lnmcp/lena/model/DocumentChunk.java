@@ -0,0 +1,51 @@
+package com.lnmcp.lena.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a passage of a document that is embedded and retrieved on its own.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentChunk {
+
+    /**
+     * The document the passage belongs to (e.g., filename)
+     */
+    private String documentId;
+
+    /**
+     * Position of the passage within the document, starting at 0
+     */
+    private int chunkIndex;
+
+    /**
+     * Page or slide number where the passage starts
+     */
+    private Integer pageNumber;
+
+    /**
+     * Offset of the first character of the passage in the document content
+     */
+    private int startOffset;
+
+    /**
+     * Offset after the last character of the passage in the document content
+     */
+    private int endOffset;
+
+    /**
+     * The passage text
+     */
+    private String content;
+
+    /**
+     * Similarity to the query, set on search results
+     */
+    private Float score;
+}
@@ -30,10 +30,15 @@ public class DocumentContext {
     private String content;
     
     /**
-     * Page number or slide number where the content was extracted
+     * Page number or slide number where the content starts
      */
     private Integer pageNumber;
     
+    /**
+     * Total number of pages or slides in the source document
+     */
+    private Integer pageCount;
+    
     /**
      * Document types supported by the system
      */
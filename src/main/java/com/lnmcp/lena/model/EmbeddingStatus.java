@@ -0,0 +1,27 @@
+package com.lnmcp.lena.model;
+
+/**
+ * Progress of a document through the background embedding pipeline.
+ */
+public enum EmbeddingStatus {
+
+    /**
+     * Waiting in the pipeline queue
+     */
+    QUEUED,
+
+    /**
+     * Part of a batch that is being embedded
+     */
+    EMBEDDING,
+
+    /**
+     * Every passage of the document has a stored embedding
+     */
+    READY,
+
+    /**
+     * Embedding failed after all retries, or the queue was full
+     */
+    FAILED
+}
@@ -29,6 +29,13 @@ public class McpContext {
     @Builder.Default
     private List<DocumentContext> documentContexts = new ArrayList<>();
     
+    /**
+     * Passages of the document contexts most relevant to the prompt.
+     * Only these are sent to the model, never the full documents.
+     */
+    @Builder.Default
+    private List<DocumentChunk> relevantPassages = new ArrayList<>();
+    
     /**
      * List of database contexts extracted from HSQLDB
      */
@@ -0,0 +1,208 @@
+package com.lnmcp.lena.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Burkhard-Keller tree over a set of terms for approximate lookup by Levenshtein distance.
+ * Each child hangs off its parent at its exact distance from the parent's term, so by the
+ * triangle inequality a search within distance d of a query only descends into children
+ * whose edge distance is within d of the query's distance to the parent. For the small
+ * distances used in fuzzy matching a search visits a small fraction of the terms.
+ * <p>
+ * Removal marks a node dead instead of restructuring the tree; once more than half of the
+ * nodes are dead the tree is rebuilt from the live terms.
+ * <p>
+ * Searches may run concurrently with each other but not with updates.
+ */
+public final class BkTree {
+
+    private static final int MIN_REBUILD_SIZE = 1024;
+
+    private final Map<String, Node> nodes = new HashMap<>();
+
+    private Node root;
+
+    private int dead;
+
+    /**
+     * Add a term
+     *
+     * @return true if the term was not already present
+     */
+    public boolean add(String term) {
+        Node existing = nodes.get(term);
+        if (existing != null) {
+            if (existing.live) {
+                return false;
+            }
+            existing.live = true;
+            dead--;
+            return true;
+        }
+
+        Node node = new Node(term);
+        nodes.put(term, node);
+        if (root == null) {
+            root = node;
+            return true;
+        }
+        int[] previous = new int[term.length() + 1];
+        int[] current = new int[term.length() + 1];
+        Node parent = root;
+        while (true) {
+            int distance = distance(term, parent.term, previous, current);
+            Node child = parent.child(distance);
+            if (child == null) {
+                parent.addChild(distance, node);
+                return true;
+            }
+            parent = child;
+        }
+    }
+
+    /**
+     * Remove a term
+     *
+     * @return true if the term was present
+     */
+    public boolean remove(String term) {
+        Node node = nodes.get(term);
+        if (node == null || !node.live) {
+            return false;
+        }
+        node.live = false;
+        dead++;
+        if (dead > MIN_REBUILD_SIZE && dead * 2 > nodes.size()) {
+            rebuild();
+        }
+        return true;
+    }
+
+    /**
+     * Number of live terms
+     */
+    public int size() {
+        return nodes.size() - dead;
+    }
+
+    /**
+     * Visit every live term within a distance of the query, including the query itself if present
+     *
+     * @param query The term to look up
+     * @param maxDistance The maximum Levenshtein distance
+     * @param action Receives each matching term and its distance from the query
+     */
+    public void search(String query, int maxDistance, ObjIntConsumer<String> action) {
+        if (root == null) {
+            return;
+        }
+        int[] previous = new int[query.length() + 1];
+        int[] current = new int[query.length() + 1];
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(query, node.term, previous, current);
+            if (distance <= maxDistance && node.live) {
+                action.accept(node.term, distance);
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                if (Math.abs(node.distances[i] - distance) <= maxDistance) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the live terms within a distance of the query
+     */
+    public List<String> search(String query, int maxDistance) {
+        List<String> matches = new ArrayList<>();
+        search(query, maxDistance, (term, distance) -> matches.add(term));
+        return matches;
+    }
+
+    private void rebuild() {
+        List<String> live = new ArrayList<>(size());
+        for (Node node : nodes.values()) {
+            if (node.live) {
+                live.add(node.term);
+            }
+        }
+        nodes.clear();
+        root = null;
+        dead = 0;
+        for (String term : live) {
+            add(term);
+        }
+    }
+
+    /**
+     * Levenshtein distance using two caller-provided rows of at least a.length() + 1 entries
+     */
+    static int distance(String a, String b, int[] previous, int[] current) {
+        int n = a.length();
+        for (int i = 0; i <= n; i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            char c = b.charAt(j - 1);
+            for (int i = 1; i <= n; i++) {
+                int substitution = previous[i - 1] + (a.charAt(i - 1) == c ? 0 : 1);
+                current[i] = Math.min(substitution, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[n];
+    }
+
+    private static final class Node {
+
+        final String term;
+
+        boolean live = true;
+
+        int[] distances;
+
+        Node[] children;
+
+        int childCount;
+
+        Node(String term) {
+            this.term = term;
+        }
+
+        Node child(int distance) {
+            for (int i = 0; i < childCount; i++) {
+                if (distances[i] == distance) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(int distance, Node child) {
+            if (children == null) {
+                distances = new int[2];
+                children = new Node[2];
+            } else if (childCount == children.length) {
+                distances = Arrays.copyOf(distances, childCount * 2);
+                children = Arrays.copyOf(children, childCount * 2);
+            }
+            distances[childCount] = distance;
+            children[childCount] = child;
+            childCount++;
+        }
+    }
+}
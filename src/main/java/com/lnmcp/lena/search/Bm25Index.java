@@ -0,0 +1,377 @@
+package com.lnmcp.lena.search;
+
+import com.lnmcp.lena.text.Tokenizer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * In-memory inverted index with Okapi BM25 scoring.
+ * Each term maps to a postings list of (document slot, term frequency) pairs, and each slot
+ * records its document's length in terms, so a query only touches the postings of its own
+ * terms instead of scanning document text. Documents are added, extended, replaced and removed
+ * incrementally: a document keeps the list of its distinct terms so that removing it
+ * deletes exactly its postings, and freed slots are reused. The term dictionary is also kept
+ * in a {@link BkTree} for approximate term lookup.
+ * <p>
+ * Thread-safe; searches share a read lock and updates take the write lock.
+ */
+public final class Bm25Index {
+
+    /**
+     * Default term frequency saturation
+     */
+    public static final float DEFAULT_K1 = 1.2f;
+
+    /**
+     * Default document length normalization
+     */
+    public static final float DEFAULT_B = 0.75f;
+
+    private final float k1;
+
+    private final float b;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postings = new HashMap<>();
+
+    private final BkTree terms = new BkTree();
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    private String[] ids = new String[16];
+
+    private String[][] documentTerms = new String[16][];
+
+    private int[] lengths = new int[16];
+
+    private int slotLimit;
+
+    private long totalLength;
+
+    public Bm25Index() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * @param k1 Term frequency saturation; higher lets repeated terms count for longer
+     * @param b Document length normalization, from 0 (none) to 1 (full)
+     */
+    public Bm25Index(float k1, float b) {
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    /**
+     * Index a document, replacing any previous version of it
+     *
+     * @param id The document identifier
+     * @param text The document text, split into terms by {@link Tokenizer}
+     */
+    public void add(String id, String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = tokenize(text, frequencies);
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            appendLocked(id, frequencies, length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add text to a document, indexing the document if it is not indexed yet, so that a
+     * document can be indexed a section at a time as it is extracted
+     *
+     * @param id The document identifier
+     * @param text More of the document text, split into terms by {@link Tokenizer}
+     */
+    public void append(String id, String text) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = tokenize(text, frequencies);
+
+        lock.writeLock().lock();
+        try {
+            appendLocked(id, frequencies, length);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document from the index
+     *
+     * @return true if the document was indexed
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            return removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether a document is indexed
+     */
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return slotsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of indexed documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct terms in the index
+     */
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Visit the indexed terms within a Levenshtein distance of a term, including the term itself
+     *
+     * @param term The term to look up
+     * @param maxDistance The maximum edit distance
+     * @param action Receives each indexed term and its distance
+     */
+    public void forEachSimilarTerm(String term, int maxDistance, ObjIntConsumer<String> action) {
+        lock.readLock().lock();
+        try {
+            terms.search(term, maxDistance, action);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the documents with the highest BM25 score for the given terms
+     *
+     * @param terms Query terms, as produced by {@link Tokenizer}
+     * @param k The maximum number of documents to return
+     * @return Matching documents, highest score first
+     */
+    public List<SearchResult> search(List<String> terms, int k) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String term : terms) {
+            weights.merge(term, 1.0f, Float::sum);
+        }
+        return search(weights, k, id -> true);
+    }
+
+    /**
+     * Find the documents with the highest BM25 score for weighted query terms. A term's
+     * contribution is multiplied by its weight, e.g. to count approximate matches for less.
+     *
+     * @param weightedTerms Query terms and their weights
+     * @param k The maximum number of documents to return
+     * @param filter Documents to consider
+     * @return Matching documents, highest score first
+     */
+    public List<SearchResult> search(Map<String, Float> weightedTerms, int k, Predicate<String> filter) {
+        lock.readLock().lock();
+        try {
+            int documentCount = slotsById.size();
+            if (documentCount == 0 || k <= 0) {
+                return Collections.emptyList();
+            }
+            float averageLength = Math.max(1.0f, (float) totalLength / documentCount);
+
+            float[] scores = new float[slotLimit];
+            int[] touched = new int[slotLimit];
+            int touchedCount = 0;
+            for (Map.Entry<String, Float> entry : weightedTerms.entrySet()) {
+                Postings list = postings.get(entry.getKey());
+                if (list == null) {
+                    continue;
+                }
+                float idf = (float) Math.log(1.0 + (documentCount - list.size + 0.5) / (list.size + 0.5));
+                float weight = entry.getValue() * idf;
+                for (int i = 0; i < list.size; i++) {
+                    int slot = list.slots[i];
+                    float frequency = list.frequencies[i];
+                    float norm = k1 * (1.0f - b + b * lengths[slot] / averageLength);
+                    if (scores[slot] == 0.0f) {
+                        touched[touchedCount++] = slot;
+                    }
+                    scores[slot] += weight * frequency * (k1 + 1.0f) / (frequency + norm);
+                }
+            }
+
+            TopKSelector selector = new TopKSelector(Math.min(k, touchedCount));
+            for (int i = 0; i < touchedCount; i++) {
+                int slot = touched[i];
+                if (scores[slot] > 0.0f && filter.test(ids[slot])) {
+                    selector.offer(slot, scores[slot]);
+                }
+            }
+            String[] snapshot = ids;
+            return selector.drainResults(slot -> snapshot[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int tokenize(String text, Map<String, Integer> frequencies) {
+        int[] length = new int[1];
+        Tokenizer.tokenize(text, token -> {
+            frequencies.merge(token, 1, Integer::sum);
+            length[0]++;
+        });
+        return length[0];
+    }
+
+    private void appendLocked(String id, Map<String, Integer> frequencies, int length) {
+        Integer existing = slotsById.get(id);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+        } else {
+            slot = allocateSlot();
+            ids[slot] = id;
+            documentTerms[slot] = new String[0];
+            slotsById.put(id, slot);
+        }
+
+        List<String> newTerms = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            Postings list = postings.get(entry.getKey());
+            if (list == null) {
+                list = new Postings();
+                postings.put(entry.getKey(), list);
+                terms.add(entry.getKey());
+            }
+            if (existing == null || !list.increment(slot, entry.getValue())) {
+                list.add(slot, entry.getValue());
+                newTerms.add(entry.getKey());
+            }
+        }
+        if (!newTerms.isEmpty()) {
+            String[] previous = documentTerms[slot];
+            String[] merged = Arrays.copyOf(previous, previous.length + newTerms.size());
+            for (int i = 0; i < newTerms.size(); i++) {
+                merged[previous.length + i] = newTerms.get(i);
+            }
+            documentTerms[slot] = merged;
+        }
+        lengths[slot] += length;
+        totalLength += length;
+    }
+
+    private boolean removeLocked(String id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        for (String term : documentTerms[slot]) {
+            Postings list = postings.get(term);
+            if (list != null && list.remove(slot) && list.size == 0) {
+                postings.remove(term);
+                terms.remove(term);
+            }
+        }
+        totalLength -= lengths[slot];
+        ids[slot] = null;
+        documentTerms[slot] = null;
+        lengths[slot] = 0;
+        freeSlots.push(slot);
+        return true;
+    }
+
+    private int allocateSlot() {
+        if (!freeSlots.isEmpty()) {
+            return freeSlots.pop();
+        }
+        if (slotLimit == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            documentTerms = Arrays.copyOf(documentTerms, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        return slotLimit++;
+    }
+
+    /**
+     * Unordered postings of one term: parallel arrays of slots and term frequencies
+     */
+    private static final class Postings {
+
+        private int[] slots = new int[4];
+
+        private int[] frequencies = new int[4];
+
+        private int size;
+
+        void add(int slot, int frequency) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            slots[size] = slot;
+            frequencies[size] = frequency;
+            size++;
+        }
+
+        /**
+         * Add to the frequency of a slot already in the list
+         *
+         * @return false if the slot is not in the list
+         */
+        boolean increment(int slot, int frequency) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    frequencies[i] += frequency;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean remove(int slot) {
+            for (int i = 0; i < size; i++) {
+                if (slots[i] == slot) {
+                    // Order does not matter, so the last entry fills the gap
+                    size--;
+                    slots[i] = slots[size];
+                    frequencies[i] = frequencies[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
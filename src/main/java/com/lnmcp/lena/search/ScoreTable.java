@@ -0,0 +1,73 @@
+package com.lnmcp.lena.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Best score per key, e.g. the best passage score of each document.
+ * Scores live in a primitive array indexed by key ordinal, so updating the score of a key
+ * already in the table does not allocate. Not thread-safe.
+ */
+public final class ScoreTable {
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    private String[] keys = new String[16];
+
+    private float[] scores = new float[16];
+
+    /**
+     * Record a score for a key, keeping the highest score seen for it
+     */
+    public void max(String key, float score) {
+        Integer ordinal = ordinals.get(key);
+        if (ordinal == null) {
+            add(key, score);
+        } else if (score > scores[ordinal]) {
+            scores[ordinal] = score;
+        }
+    }
+
+    /**
+     * Record every score of another table, keeping the highest score per key
+     *
+     * @return This table
+     */
+    public ScoreTable maxAll(ScoreTable other) {
+        for (int i = 0; i < other.size(); i++) {
+            max(other.keys[i], other.scores[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Number of keys in the table
+     */
+    public int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * The k keys with the highest scores, highest first
+     */
+    public List<SearchResult> top(int k) {
+        TopKSelector selector = new TopKSelector(Math.min(k, size()));
+        for (int i = 0; i < size(); i++) {
+            selector.offer(i, scores[i]);
+        }
+        return selector.drainResults(ordinal -> keys[ordinal]);
+    }
+
+    private void add(String key, float score) {
+        int ordinal = ordinals.size();
+        if (ordinal == keys.length) {
+            keys = Arrays.copyOf(keys, ordinal * 2);
+            scores = Arrays.copyOf(scores, ordinal * 2);
+        }
+        keys[ordinal] = key;
+        scores[ordinal] = score;
+        ordinals.put(key, ordinal);
+    }
+}
@@ -0,0 +1,48 @@
+package com.lnmcp.lena.search;
+
+import java.util.Objects;
+
+/**
+ * An identifier with its relevance score.
+ */
+public final class SearchResult {
+
+    private final String id;
+
+    private final float score;
+
+    public SearchResult(String id, float score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchResult)) {
+            return false;
+        }
+        SearchResult that = (SearchResult) o;
+        return Float.compare(score, that.score) == 0 && Objects.equals(id, that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, score);
+    }
+
+    @Override
+    public String toString() {
+        return id + "=" + score;
+    }
+}
@@ -0,0 +1,169 @@
+package com.lnmcp.lena.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Selects the k highest-scoring items from a stream of (item, score) pairs.
+ * Keeps a fixed-size min-heap over primitive arrays, so offering a candidate is
+ * O(log k) in the worst case, O(1) when it does not beat the current k-th score,
+ * and never allocates. Items are int handles such as vector slots or list indexes.
+ * <p>
+ * Not thread-safe; use one selector per thread or query.
+ */
+public final class TopKSelector {
+
+    private final int capacity;
+
+    private final int[] items;
+
+    private final float[] scores;
+
+    private int size;
+
+    /**
+     * @param k The number of items to keep
+     */
+    public TopKSelector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        this.capacity = k;
+        this.items = new int[k];
+        this.scores = new float[k];
+    }
+
+    /**
+     * Offer a candidate
+     *
+     * @return true if the candidate is among the best k seen so far
+     */
+    public boolean offer(int item, float score) {
+        if (size < capacity) {
+            items[size] = item;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (capacity == 0 || score <= scores[0]) {
+            return false;
+        }
+        items[0] = item;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    /**
+     * Offer every item kept by another selector, e.g. to merge per-partition results
+     *
+     * @return This selector
+     */
+    public TopKSelector offerAll(TopKSelector other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.items[i], other.scores[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Lowest score a candidate must beat to be kept, or negative infinity while fewer than k
+     * items have been offered
+     */
+    public float threshold() {
+        return size < capacity ? Float.NEGATIVE_INFINITY : (capacity == 0 ? Float.POSITIVE_INFINITY : scores[0]);
+    }
+
+    /**
+     * Number of items currently kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Move the kept items into caller-supplied arrays, highest score first, and empty the selector
+     *
+     * @param outItems Receives the items; must hold at least {@link #size()} entries
+     * @param outScores Receives the scores; must hold at least {@link #size()} entries
+     * @return The number of items written
+     */
+    public int drainDescending(int[] outItems, float[] outScores) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            outItems[i] = items[0];
+            outScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                items[0] = items[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Move the kept items into a list of results, highest score first, and empty the selector
+     *
+     * @param ids Maps an item to its identifier; items mapped to null are skipped
+     * @return The identified results
+     */
+    public List<SearchResult> drainResults(IntFunction<String> ids) {
+        int[] outItems = new int[size];
+        float[] outScores = new float[size];
+        int count = drainDescending(outItems, outScores);
+        List<SearchResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String id = ids.apply(outItems[i]);
+            if (id != null) {
+                results.add(new SearchResult(id, outScores[i]));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Remove all kept items
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int item = items[index];
+        float score = scores[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            items[index] = items[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        items[index] = item;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index) {
+        int item = items[index];
+        float score = scores[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            items[index] = items[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        items[index] = item;
+        scores[index] = score;
+    }
+}
@@ -1,10 +1,12 @@
 package com.lnmcp.lena.service;
 
+import com.lnmcp.lena.model.DocumentChunk;
 import com.lnmcp.lena.model.DocumentContext;
 
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Service for processing documents (PDF, PPT) and extracting context.
@@ -12,7 +14,8 @@ import java.util.List;
 public interface DocumentService {
 
     /**
-     * Extract context from a document file
+     * Extract context from a document file. A document extracted in several sections, such as
+     * a long PDF, is assembled into one context.
      *
      * @param filePath Path to the document file
      * @return DocumentContext containing extracted information
@@ -24,7 +27,8 @@ public interface DocumentService {
      * Extract context from multiple document files
      *
      * @param filePaths List of paths to document files
-     * @return List of DocumentContext objects containing extracted information
+     * @return One DocumentContext per extracted section, each numbered with the page it starts on,
+     *         in document and page order
      * @throws IOException If there's an error reading or processing any file
      */
     List<DocumentContext> extractContextFromMultipleDocuments(List<Path> filePaths) throws IOException;
@@ -42,11 +46,38 @@ public interface DocumentService {
      * Extract context from multiple document files by name
      *
      * @param filenames List of document filenames
-     * @return List of DocumentContext objects containing extracted information
+     * @return One DocumentContext per extracted section, each numbered with the page it starts on,
+     *         in document and page order
      * @throws IOException If there's an error reading or processing any file
      */
     List<DocumentContext> extractContextFromMultipleDocumentsByFilename(List<String> filenames) throws IOException;
 
+    /**
+     * Extract a document again after its file changed, replacing the cached context and
+     * re-embedding the passages whose text changed
+     *
+     * @param filename Name of the document file
+     * @return DocumentContext containing the newly extracted information
+     * @throws IOException If there's an error reading or processing the file
+     */
+    DocumentContext reloadDocument(String filename) throws IOException;
+
+    /**
+     * Forget a document whose file was deleted, removing its cached context and embeddings
+     *
+     * @param filename Name of the document file
+     * @return true if the document had been extracted
+     */
+    boolean removeDocument(String filename);
+
+    /**
+     * Get the documents that are extracted, cached or embedded, whether or not their files
+     * still exist, e.g. to find documents deleted while changes went unnoticed
+     *
+     * @return Document filenames
+     */
+    Set<String> getIndexedDocuments();
+
     /**
      * Find documents that might be relevant to the given prompt
      *
@@ -56,6 +87,16 @@ public interface DocumentService {
      */
     List<String> findRelevantDocuments(String prompt) throws IOException;
 
+    /**
+     * Find the passages of each given document most relevant to the prompt, by vector similarity
+     * where the document is embedded and by keyword otherwise
+     *
+     * @param prompt The user's prompt
+     * @param filenames The documents selected for the prompt
+     * @return Relevant passages grouped by document in the given order, most relevant first within each
+     */
+    List<DocumentChunk> findRelevantPassages(String prompt, List<String> filenames);
+
     /**
      * Get a list of all available documents
      *
@@ -0,0 +1,23 @@
+package com.lnmcp.lena.service;
+
+/**
+ * Background watcher of the documents directory that keeps extracted documents, embeddings
+ * and cached responses in step with the files on disk. Changes are debounced and only the
+ * affected documents are extracted, embedded or removed again.
+ */
+public interface DocumentWatcher {
+
+    /**
+     * Check whether the documents directory is being watched
+     *
+     * @return true if the watcher is running
+     */
+    boolean isWatching();
+
+    /**
+     * Get the number of changed documents waiting for their debounce delay to pass
+     *
+     * @return The number of pending changes
+     */
+    int getPendingChanges();
+}
@@ -0,0 +1,59 @@
+package com.lnmcp.lena.service;
+
+import com.lnmcp.lena.model.DocumentChunk;
+import com.lnmcp.lena.model.EmbeddingStatus;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Background stage that embeds extracted documents off the request path.
+ * Documents are queued in a bounded queue and embedded in batches by worker threads,
+ * so extraction returns as soon as the text is available. A document is submitted a section
+ * at a time while it is extracted, so its first passages are embedded before the rest is read.
+ */
+public interface EmbeddingPipeline {
+
+    /**
+     * Queue passages of a document for embedding, e.g. those of one extracted section. They join
+     * the passages already queued for the document, unless they start the document over.
+     * Never blocks: a document that finds the queue full waits until the workers drain it
+     * rather than failing or holding up extraction.
+     *
+     * @param documentId The document identifier (e.g., filename)
+     * @param passages Passages recorded with {@link EmbeddingService#addDocumentSection}
+     * @return true if the passages were queued, false if there were none
+     */
+    boolean submit(String documentId, List<DocumentChunk> passages);
+
+    /**
+     * Drop a document from the pipeline, e.g. after its file was deleted. A batch already
+     * embedding it removes the stored embeddings again when it finishes.
+     *
+     * @param documentId The document identifier
+     */
+    void cancel(String documentId);
+
+    /**
+     * Get the embedding status of a document
+     *
+     * @param documentId The document identifier
+     * @return The status, or null if the document was never submitted
+     */
+    EmbeddingStatus getStatus(String documentId);
+
+    /**
+     * Check whether a document's embeddings are stored and searchable
+     *
+     * @param documentId The document identifier
+     * @return true if the document is READY
+     */
+    boolean isReady(String documentId);
+
+    /**
+     * Get the embedding status of every submitted document
+     *
+     * @return Status keyed by document identifier
+     */
+    Map<String, EmbeddingStatus> getStatuses();
+}
@@ -1,7 +1,13 @@
 package com.lnmcp.lena.service;
 
+import com.lnmcp.lena.model.DocumentChunk;
+import com.lnmcp.lena.model.DocumentContext;
+import com.lnmcp.lena.search.SearchResult;
+
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Service for generating and managing embeddings for documents.
@@ -16,6 +22,14 @@ public interface EmbeddingService {
      */
     List<Float> generateEmbedding(String text);
 
+    /**
+     * Generate embeddings for several texts using batched requests
+     *
+     * @param texts The texts to generate embeddings for
+     * @return One embedding per text, in input order; an empty list marks a text that failed
+     */
+    List<List<Float>> generateEmbeddings(List<String> texts);
+
     /**
      * Calculate the cosine similarity between two embeddings
      *
@@ -26,7 +40,7 @@ public interface EmbeddingService {
     float calculateSimilarity(List<Float> embedding1, List<Float> embedding2);
 
     /**
-     * Generate and store embeddings for a document
+     * Split a document into passages and generate and store an embedding for each
      *
      * @param documentId The document identifier (e.g., filename)
      * @param content The document content
@@ -34,13 +48,82 @@ public interface EmbeddingService {
     void storeDocumentEmbedding(String documentId, String content);
 
     /**
-     * Find the most similar documents to a query
+     * Generate and store embeddings for several documents using batched requests
+     *
+     * @param contentsById Document content keyed by document identifier
+     */
+    void storeDocumentEmbeddings(Map<String, String> contentsById);
+
+    /**
+     * Split a section of a document into passages and record them ahead of embedding.
+     * Sections are added in page order as the document is extracted: a section starting on
+     * the first page starts the document over, and each later section's passages are numbered
+     * after those of the sections before it.
+     *
+     * @param documentId The document identifier (e.g., filename)
+     * @param section The section content and the page it starts on
+     * @return The passages of the section
+     */
+    List<DocumentChunk> addDocumentSection(String documentId, DocumentContext section);
+
+    /**
+     * Finish recording a document after its last section, removing the embeddings of
+     * passages it no longer has
+     *
+     * @param documentId The document identifier
+     */
+    void completeDocumentSections(String documentId);
+
+    /**
+     * Generate and store embeddings for recorded passages using batched requests. Passages
+     * that are no longer recorded, e.g. because their document was extracted again, are skipped.
+     *
+     * @param passages Passages returned by {@link #addDocumentSection}
+     */
+    void storePassageEmbeddings(List<DocumentChunk> passages);
+
+    /**
+     * Check whether every passage of a document has a stored embedding
+     *
+     * @param documentId The document identifier
+     * @return true if the document's passages are known and all are embedded
+     */
+    boolean hasDocumentEmbedding(String documentId);
+
+    /**
+     * Remove the stored embeddings of every passage of a document
+     *
+     * @param documentId The document identifier
+     */
+    void removeDocumentEmbedding(String documentId);
+
+    /**
+     * Get the documents that have stored passage embeddings, including those loaded from disk
+     *
+     * @return Document identifiers
+     */
+    Set<String> getEmbeddedDocuments();
+
+    /**
+     * Find the most similar documents to a query, scoring each document by its best passage
      *
      * @param query The query text
      * @param maxResults The maximum number of results to return
-     * @return A map of document IDs to similarity scores, sorted by similarity (descending)
+     * @return Document IDs with their similarity scores, sorted by similarity (descending)
+     */
+    List<SearchResult> findSimilarDocuments(String query, int maxResults);
+
+    /**
+     * Find the passages of each of the given documents most similar to a query. Only passages
+     * that have an embedding are scored, so a document awaiting embedding has none.
+     *
+     * @param query The query text
+     * @param documentIds The documents to take passages from
+     * @param maxPerDocument The maximum number of passages to return per document
+     * @return Passages with their similarity scores, grouped by document in the given order and
+     *         sorted by similarity (descending) within each document
      */
-    Map<String, Float> findSimilarDocuments(String query, int maxResults);
+    List<DocumentChunk> findSimilarChunks(String query, Collection<String> documentIds, int maxPerDocument);
 
     /**
      * Clear all stored embeddings
@@ -4,6 +4,7 @@ import com.lnmcp.lena.config.CacheConfig;
 import com.lnmcp.lena.model.McpContext;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.stereotype.Service;
 
@@ -60,6 +61,14 @@ public class ResponseCacheService {
         return context;
     }
 
+    /**
+     * Remove every cached response, e.g. after the documents they were answered from changed.
+     */
+    @CacheEvict(value = CacheConfig.RESPONSE_CACHE, allEntries = true)
+    public void evictAll() {
+        log.info("Evicting all cached responses");
+    }
+
     /**
      * Normalize a prompt to identify similar questions.
      * This method converts the prompt to lowercase, removes punctuation,
@@ -1,6 +1,7 @@
 package com.lnmcp.lena.service.impl;
 
 import com.lnmcp.lena.model.DatabaseContext;
+import com.lnmcp.lena.model.DocumentChunk;
 import com.lnmcp.lena.model.DocumentContext;
 import com.lnmcp.lena.model.McpContext;
 import com.lnmcp.lena.model.PromptRequest;
@@ -8,6 +9,9 @@ import com.lnmcp.lena.service.AIService;
 import com.lnmcp.lena.service.DatabaseService;
 import com.lnmcp.lena.service.DocumentService;
 import com.lnmcp.lena.service.ResponseCacheService;
+import com.lnmcp.lena.text.PhraseMatcher;
+import com.lnmcp.lena.text.Tokenizer;
+import com.lnmcp.lena.text.TextChunker;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,9 +26,12 @@ import org.springframework.web.client.RestTemplate;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
@@ -36,6 +43,9 @@ import java.util.stream.Collectors;
 @Slf4j
 public class AIServiceImpl implements AIService {
 
+    // Words after a keyword that suggest the paragraph defines or explains it
+    private static final List<String> DEFINITION_CUES = Arrays.asList(" is", " are", " means", " refers to");
+
     @Value("${spring.ai.ollama.base-url}")
     private String ollamaBaseUrl;
 
@@ -78,6 +88,7 @@ public class AIServiceImpl implements AIService {
                         
                         // Add document contexts to MCP context
                         documentContexts.forEach(mcpContext::addDocumentContext);
+                        mcpContext.setRelevantPassages(documentService.findRelevantPassages(mcpContext.getUserPrompt(), relevantDocuments));
                         
                         // Check if we can generate a response directly from documents
                         String documentResponse = tryGenerateResponseFromDocuments(mcpContext);
@@ -136,7 +147,8 @@ public class AIServiceImpl implements AIService {
         }
         
         String userPrompt = mcpContext.getUserPrompt().toLowerCase();
-        List<String> promptKeywords = extractKeywords(userPrompt);
+        List<String> promptKeywords = Tokenizer.keywords(userPrompt);
+        PhraseMatcher relevancePhrases = compileRelevancePhrases(userPrompt, promptKeywords);
         
         // Track the best matching document and its score
         DocumentContext bestMatch = null;
@@ -157,7 +169,8 @@ public class AIServiceImpl implements AIService {
                     continue; // Skip short paragraphs
                 }
                 
-                double score = calculateRelevanceScore(paragraph, userPrompt, promptKeywords);
+                double score = calculateRelevanceScore(paragraph, userPrompt, promptKeywords.size(),
+                        relevancePhrases);
                 
                 if (score > bestScore) {
                     bestScore = score;
@@ -184,10 +197,12 @@ public class AIServiceImpl implements AIService {
         response.append("Based on the information from \"").append(doc.getFilename()).append("\":\n\n");
         response.append(matchingSection.trim());
         
-        // Add source information
+        // Add source information, with the page the matching section is on
         response.append("\n\n(Source: ").append(doc.getFilename());
         if (doc.getPageNumber() != null) {
-            response.append(", Page/Slide: ").append(doc.getPageNumber());
+            int offset = Math.max(0, doc.getContent().indexOf(matchingSection));
+            int page = doc.getPageNumber() + TextChunker.pageAt(doc.getContent(), offset) - 1;
+            response.append(", Page/Slide: ").append(page);
         }
         response.append(")");
         
@@ -195,28 +210,46 @@ public class AIServiceImpl implements AIService {
     }
     
     /**
-     * Calculate relevance score between a paragraph and a user prompt
+     * Compile the phrases paragraphs are scored on: the prompt (pattern 0), each keyword
+     * (patterns 1 to n), then each keyword followed by a definition cue
      */
-    private double calculateRelevanceScore(String paragraph, String prompt, List<String> promptKeywords) {
-        String lowerParagraph = paragraph.toLowerCase();
+    private PhraseMatcher compileRelevancePhrases(String prompt, List<String> promptKeywords) {
+        List<String> phrases = new ArrayList<>();
+        phrases.add(prompt);
+        phrases.addAll(promptKeywords);
+        for (String keyword : promptKeywords) {
+            for (String cue : DEFINITION_CUES) {
+                phrases.add(keyword + cue);
+            }
+        }
+        return new PhraseMatcher(phrases);
+    }
+    
+    /**
+     * Calculate relevance score between a paragraph and a user prompt, finding every
+     * phrase in a single pass over the paragraph
+     */
+    private double calculateRelevanceScore(String paragraph, String prompt, int keywordCount,
+                                           PhraseMatcher relevancePhrases) {
+        int[] counts = relevancePhrases.count(paragraph);
         double score = 0.0;
         
         // Check for exact phrase match (highest weight)
-        if (lowerParagraph.contains(prompt)) {
+        if (counts[0] > 0) {
             score += 0.6;
         }
         
         // Check for keyword matches
         int keywordMatches = 0;
-        for (String keyword : promptKeywords) {
-            if (lowerParagraph.contains(keyword)) {
+        for (int i = 1; i <= keywordCount; i++) {
+            if (counts[i] > 0) {
                 keywordMatches++;
             }
         }
         
         // Calculate keyword match percentage and add to score
-        if (!promptKeywords.isEmpty()) {
-            double keywordMatchPercentage = (double) keywordMatches / promptKeywords.size();
+        if (keywordCount > 0) {
+            double keywordMatchPercentage = (double) keywordMatches / keywordCount;
             score += keywordMatchPercentage * 0.3;
         }
         
@@ -225,11 +258,8 @@ public class AIServiceImpl implements AIService {
             prompt.contains("where") || prompt.contains("why") || prompt.contains("who")) {
             
             // If the paragraph contains phrases like "is", "are", "means", etc. after a keyword
-            for (String keyword : promptKeywords) {
-                if (lowerParagraph.contains(keyword + " is") || 
-                    lowerParagraph.contains(keyword + " are") ||
-                    lowerParagraph.contains(keyword + " means") ||
-                    lowerParagraph.contains(keyword + " refers to")) {
+            for (int i = keywordCount + 1; i < counts.length; i++) {
+                if (counts[i] > 0) {
                     score += 0.2;
                     break;
                 }
@@ -238,35 +268,6 @@ public class AIServiceImpl implements AIService {
         
         return score;
     }
-    
-    /**
-     * Extract keywords from a prompt (simplified version)
-     */
-    private List<String> extractKeywords(String prompt) {
-        if (prompt == null || prompt.trim().isEmpty()) {
-            return new ArrayList<>();
-        }
-        
-        // Convert to lowercase and split by non-alphanumeric characters
-        String[] words = prompt.toLowerCase().split("[^a-zA-Z0-9가-힣]+");
-        
-        // Filter out common words and short words
-        List<String> commonWords = Arrays.asList("the", "a", "an", "and", "or", "but", "is", "are", "was", "were", 
-                                               "in", "on", "at", "to", "for", "with", "by", "about", "like", 
-                                               "through", "over", "before", "after", "between", "under", "during",
-                                               "of", "from", "up", "down", "into", "out", "as", "if", "when", 
-                                               "why", "how", "all", "any", "both", "each", "few", "more", "most",
-                                               "other", "some", "such", "no", "nor", "not", "only", "own", "same",
-                                               "so", "than", "too", "very", "can", "will", "just", "should", "now");
-        
-        List<String> keywords = new ArrayList<>();
-        for (String word : words) {
-            if (word.length() > 2 && !commonWords.contains(word)) {
-                keywords.add(word);
-            }
-        }
-        return keywords;
-    }
 
     @Override
     @Async
@@ -300,6 +301,7 @@ public class AIServiceImpl implements AIService {
                         
                         // Add document contexts to MCP context
                         documentContexts.forEach(mcpContext::addDocumentContext);
+                        mcpContext.setRelevantPassages(documentService.findRelevantPassages(mcpContext.getUserPrompt(), relevantDocuments));
                         
                         // Check if we can generate a response directly from documents
                         String documentResponse = tryGenerateResponseFromDocuments(mcpContext);
@@ -463,6 +465,8 @@ public class AIServiceImpl implements AIService {
             List<DocumentContext> documentContexts = documentService.extractContextFromMultipleDocumentsByFilename(
                     promptRequest.getDocumentReferences());
             documentContexts.forEach(mcpContext::addDocumentContext);
+            mcpContext.setRelevantPassages(documentService.findRelevantPassages(
+                    promptRequest.getPrompt(), promptRequest.getDocumentReferences()));
         }
 
         // Extract context from database tables if specified
@@ -485,11 +489,34 @@ public class AIServiceImpl implements AIService {
 
         // Add document contexts
         if (mcpContext.getDocumentContexts() != null && !mcpContext.getDocumentContexts().isEmpty()) {
+            // Group relevant passages by document; only those are sent, never the full content
+            Map<String, List<DocumentChunk>> passagesByDocument = new HashMap<>();
+            if (mcpContext.getRelevantPassages() != null) {
+                for (DocumentChunk passage : mcpContext.getRelevantPassages()) {
+                    passagesByDocument.computeIfAbsent(passage.getDocumentId(), k -> new ArrayList<>()).add(passage);
+                }
+            }
+
             systemPrompt.append("DOCUMENT CONTEXT:\n");
+            Set<String> listedDocuments = new HashSet<>();
             for (DocumentContext doc : mcpContext.getDocumentContexts()) {
+                // Long documents come as several sections in page order; list each document once
+                if (!listedDocuments.add(doc.getFilename())) {
+                    continue;
+                }
                 systemPrompt.append("Document: ").append(doc.getFilename()).append("\n");
                 systemPrompt.append("Type: ").append(doc.getDocumentType()).append("\n");
-                systemPrompt.append("Content:\n").append(doc.getContent()).append("\n\n");
+                List<DocumentChunk> passages = passagesByDocument.get(doc.getFilename());
+                if (passages == null || passages.isEmpty()) {
+                    systemPrompt.append("(No relevant passages)\n\n");
+                    continue;
+                }
+                // Present passages in document order
+                passages.sort(Comparator.comparingInt(DocumentChunk::getChunkIndex));
+                for (DocumentChunk passage : passages) {
+                    systemPrompt.append("Passage (Page/Slide ").append(passage.getPageNumber()).append("):\n");
+                    systemPrompt.append(passage.getContent()).append("\n\n");
+                }
             }
         }
 
@@ -2,6 +2,8 @@ package com.lnmcp.lena.service.impl;
 
 import com.lnmcp.lena.model.DatabaseContext;
 import com.lnmcp.lena.service.DatabaseService;
+import com.lnmcp.lena.text.Tokenizer;
+import com.lnmcp.lena.util.ExtractionExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -14,7 +16,6 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,7 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     private final JdbcTemplate jdbcTemplate;
     private final DataSource dataSource;
+    private final ExtractionExecutor extractionExecutor;
 
     // Cache for database contexts to avoid repeated querying of the same tables
     private final Map<String, DatabaseContext> tableCache = new ConcurrentHashMap<>();
@@ -54,17 +56,17 @@ public class DatabaseServiceImpl implements DatabaseService {
 
     @Override
     public List<DatabaseContext> extractContextFromMultipleTables(List<String> tableNames) {
-        // Process tables in parallel using streams
-        return tableNames.parallelStream()
-                .map(tableName -> {
-                    try {
-                        return extractContextFromTable(tableName);
-                    } catch (Exception e) {
-                        log.error("Error extracting context from table: {}", tableName, e);
-                        // Continue with other tables instead of failing completely
-                        return null;
-                    }
-                })
+        // Query tables in parallel on the extraction pool, off the common ForkJoinPool
+        List<DatabaseContext> contexts = extractionExecutor.map(tableNames, tableName -> {
+            try {
+                return extractContextFromTable(tableName);
+            } catch (Exception e) {
+                log.error("Error extracting context from table: {}", tableName, e);
+                // Continue with other tables instead of failing completely
+                return null;
+            }
+        });
+        return contexts.stream()
                 .filter(context -> context != null)
                 .collect(Collectors.toList());
     }
@@ -184,7 +186,7 @@ public class DatabaseServiceImpl implements DatabaseService {
 
         // Simple relevance check: check if any keywords from the prompt appear in the table name
         // In a real implementation, this would be more sophisticated, possibly using schema information
-        List<String> keywords = extractKeywords(prompt);
+        List<String> keywords = Tokenizer.keywords(prompt);
 
         return allTables.stream()
                 .filter(tableName -> {
@@ -194,31 +196,4 @@ public class DatabaseServiceImpl implements DatabaseService {
                 })
                 .collect(Collectors.toList());
     }
-
-    /**
-     * Extract keywords from a prompt
-     * This is a simple implementation that just splits the prompt by spaces and removes common words
-     */
-    private List<String> extractKeywords(String prompt) {
-        if (prompt == null || prompt.trim().isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // Convert to lowercase and split by non-alphanumeric characters
-        String[] words = prompt.toLowerCase().split("[^a-zA-Z0-9가-힣]+");
-
-        // Filter out common words and short words
-        List<String> commonWords = Arrays.asList("the", "a", "an", "and", "or", "but", "is", "are", "was", "were", 
-                                               "in", "on", "at", "to", "for", "with", "by", "about", "like", 
-                                               "through", "over", "before", "after", "between", "under", "during",
-                                               "of", "from", "up", "down", "into", "out", "as", "if", "when", 
-                                               "why", "how", "all", "any", "both", "each", "few", "more", "most",
-                                               "other", "some", "such", "no", "nor", "not", "only", "own", "same",
-                                               "so", "than", "too", "very", "can", "will", "just", "should", "now");
-
-        return Arrays.stream(words)
-                .filter(word -> word.length() > 2) // Filter out short words
-                .filter(word -> !commonWords.contains(word)) // Filter out common words
-                .collect(Collectors.toList());
-    }
 }
@@ -1,12 +1,30 @@
 package com.lnmcp.lena.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lnmcp.lena.model.DocumentChunk;
 import com.lnmcp.lena.model.DocumentContext;
+import com.lnmcp.lena.model.EmbeddingStatus;
+import com.lnmcp.lena.search.Bm25Index;
+import com.lnmcp.lena.search.SearchResult;
+import com.lnmcp.lena.search.TopKSelector;
 import com.lnmcp.lena.service.DocumentService;
+import com.lnmcp.lena.service.EmbeddingPipeline;
 import com.lnmcp.lena.service.EmbeddingService;
+import com.lnmcp.lena.text.ExtractionCache;
+import com.lnmcp.lena.text.PdfPageExtractor;
+import com.lnmcp.lena.text.PhraseMatcher;
+import com.lnmcp.lena.text.TextChunker;
+import com.lnmcp.lena.text.Tokenizer;
+import com.lnmcp.lena.util.ByteBudget;
+import com.lnmcp.lena.util.ExtractionExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.poi.xslf.usermodel.XMLSlideShow;
 import org.apache.poi.xslf.usermodel.XSLFShape;
 import org.apache.poi.xslf.usermodel.XSLFSlide;
@@ -21,10 +39,18 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -37,71 +63,165 @@ import java.util.stream.Stream;
 @Slf4j
 public class DocumentServiceImpl implements DocumentService {
 
+    // Keyword matches whose text is checked for prompt phrases before the top 5 are chosen
+    private static final int PHRASE_CANDIDATES = 20;
+
+    // BM25 weight of an indexed term one edit away from a keyword, relative to an exact match
+    private static final float FUZZY_TERM_WEIGHT = 0.5f;
+
+    // Keywords at least this long also match indexed terms two edits away
+    private static final int LONG_KEYWORD_LENGTH = 8;
+
     @Value("${mcp.documents.path}")
     private String documentsPath;
 
     @Value("${mcp.embeddings.enabled:true}")
     private boolean embeddingsEnabled;
 
+    @Value("${mcp.documents.pdf.pages-per-section:10}")
+    private int pdfPagesPerSection;
+
+    @Value("${mcp.documents.pdf.memory-mode:mixed}")
+    private String pdfMemoryMode;
+
+    @Value("${mcp.documents.pdf.max-main-memory-mb:64}")
+    private long pdfMaxMainMemoryMb;
+
+    @Value("${mcp.documents.pdf.scratch-path:}")
+    private String pdfScratchPath;
+
+    @Value("${mcp.documents.parse.max-concurrent-mb:256}")
+    private long maxConcurrentParseMb;
+
+    @Value("${mcp.documents.extraction-cache.enabled:true}")
+    private boolean extractionCacheEnabled;
+
+    @Value("${mcp.documents.extraction-cache.path:./data/extraction-cache}")
+    private String extractionCachePath;
+
+    @Value("${mcp.documents.cache.max-weight-mb:256}")
+    private long documentCacheMaxWeightMb;
+
+    @Value("${mcp.documents.cache.soft-values:false}")
+    private boolean documentCacheSoftValues;
+
+    @Value("${mcp.cache.stats-log-seconds:300}")
+    private long cacheStatsLogSeconds;
+
+    @Value("${mcp.documents.passages.max-per-document:3}")
+    private int maxPassagesPerDocument;
+
+    @Value("${mcp.embeddings.chunk.size:1000}")
+    private int chunkSize;
+
+    @Value("${mcp.embeddings.chunk.overlap:200}")
+    private int chunkOverlap;
+
     private final EmbeddingService embeddingService;
 
-    // Cache for document contexts to avoid repeated processing of the same documents
-    private final Map<String, DocumentContext> documentCache = new ConcurrentHashMap<>();
+    private final EmbeddingPipeline embeddingPipeline;
 
-    @Override
-    public DocumentContext extractContext(Path filePath) throws IOException {
-        String filename = filePath.getFileName().toString();
+    private final ExtractionExecutor extractionExecutor;
 
-        // Check if the document is already in the cache
-        if (documentCache.containsKey(filename)) {
-            log.debug("Using cached context for document: {}", filename);
-            return documentCache.get(filename);
+    // Cache for the extracted sections of documents to avoid repeated processing of the same
+    // documents, bounded by the size of their text
+    private Cache<String, List<DocumentContext>> documentCache;
+
+    // Documents extracted and submitted for embedding; a context reloaded after eviction is not submitted again
+    private final Set<String> extractedDocuments = ConcurrentHashMap.newKeySet();
+
+    // Inverted index over filenames and extracted text for keyword ranking
+    private final Bm25Index keywordIndex = new Bm25Index();
+
+    // Bounds the bytes of documents being parsed at once, so parallel extraction cannot exhaust the heap
+    private ByteBudget parseBudget;
+
+    // Extracted text kept on disk across restarts, or null when disabled
+    private ExtractionCache extractionCache;
+
+    // Logs document cache statistics while the cache is in use
+    private ScheduledExecutorService cacheStatsExecutor;
+
+    // Cache requests at the last periodic log; only used on the cache statistics thread
+    private long loggedCacheRequests;
+
+    /**
+     * Create the document cache, the parse budget and the on-disk extraction cache
+     */
+    @PostConstruct
+    public void initialize() {
+        Caffeine<String, List<DocumentContext>> builder = Caffeine.newBuilder()
+                .maximumWeight(documentCacheMaxWeightMb * 1024 * 1024)
+                .weigher((String filename, List<DocumentContext> sections) -> weigh(sections))
+                .recordStats();
+        if (documentCacheSoftValues) {
+            builder.softValues();
+        }
+        documentCache = builder.build();
+        log.info("Document cache holds up to {} MB of text (soft values={})",
+                documentCacheMaxWeightMb, documentCacheSoftValues);
+        if (cacheStatsLogSeconds > 0) {
+            cacheStatsExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MCP-Document-Cache-Stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            cacheStatsExecutor.scheduleWithFixedDelay(() -> {
+                long requests = documentCache.stats().requestCount();
+                if (requests != loggedCacheRequests) {
+                    loggedCacheRequests = requests;
+                    logCacheStats();
+                }
+            }, cacheStatsLogSeconds, cacheStatsLogSeconds, TimeUnit.SECONDS);
         }
 
-        // If not in cache, extract the context
-        DocumentContext context;
-        String lowercaseFilename = filename.toLowerCase();
+        parseBudget = new ByteBudget(maxConcurrentParseMb * 1024 * 1024);
+        log.info("Parsing at most {} MB of documents at once (PDF memory mode={}, max main memory={} MB)",
+                maxConcurrentParseMb, pdfMemoryMode, pdfMaxMainMemoryMb);
 
-        if (lowercaseFilename.endsWith(".pdf")) {
-            context = extractPdfContext(filePath);
-        } else if (lowercaseFilename.endsWith(".ppt") || lowercaseFilename.endsWith(".pptx")) {
-            context = extractPptContext(filePath);
-        } else if (lowercaseFilename.endsWith(".txt")) {
-            context = extractTxtContext(filePath);
-        } else {
-            throw new IOException("Unsupported file format: " + filename);
+        if (extractionCacheEnabled) {
+            extractionCache = new ExtractionCache(Paths.get(extractionCachePath));
+            log.info("Extraction cache enabled at {}", extractionCachePath);
         }
+    }
 
-        // Generate and store embedding if enabled
-        if (embeddingsEnabled && context.getContent() != null && !context.getContent().isEmpty()) {
-            try {
-                embeddingService.storeDocumentEmbedding(filename, context.getContent());
-                log.debug("Generated embedding for document: {}", filename);
-            } catch (Exception e) {
-                log.warn("Failed to generate embedding for document: {}", filename, e);
-                // Continue even if embedding generation fails
-            }
+    /**
+     * Stop logging cache statistics and log them a last time
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (cacheStatsExecutor != null) {
+            cacheStatsExecutor.shutdownNow();
         }
+        logCacheStats();
+    }
 
-        // Store in cache for future use
-        documentCache.put(filename, context);
-        return context;
+    private void logCacheStats() {
+        CacheStats stats = documentCache.stats();
+        log.info("Document cache: {} hits, {} misses, hit rate {}, {} evictions", stats.hitCount(),
+                stats.missCount(), String.format("%.2f", stats.hitRate()), stats.evictionCount());
+    }
+
+    @Override
+    public DocumentContext extractContext(Path filePath) throws IOException {
+        return assemble(extractSections(filePath));
     }
 
     @Override
     public List<DocumentContext> extractContextFromMultipleDocuments(List<Path> filePaths) throws IOException {
-        // Process documents in parallel using streams
-        List<DocumentContext> contexts = filePaths.parallelStream()
-                .map(filePath -> {
-                    try {
-                        return extractContext(filePath);
-                    } catch (IOException e) {
-                        log.error("Error extracting context from file: {}", filePath, e);
-                        // We can't throw checked exceptions in streams, so we'll return null and filter it out
-                        return null;
-                    }
-                })
-                .filter(context -> context != null)
+        // Parse documents in parallel on the extraction pool, off the common ForkJoinPool
+        List<List<DocumentContext>> extracted = extractionExecutor.map(filePaths, filePath -> {
+            try {
+                return extractSections(filePath);
+            } catch (IOException e) {
+                log.error("Error extracting context from file: {}", filePath, e);
+                // Failed and timed-out documents come back as null and are filtered out
+                return null;
+            }
+        });
+        List<DocumentContext> contexts = extracted.stream()
+                .filter(sections -> sections != null)
+                .flatMap(List::stream)
                 .collect(Collectors.toList());
 
         // If no valid contexts were extracted, throw an exception
@@ -114,11 +234,7 @@ public class DocumentServiceImpl implements DocumentService {
 
     @Override
     public DocumentContext extractContextByFilename(String filename) throws IOException {
-        Path filePath = Paths.get(documentsPath, filename);
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found: " + filename);
-        }
-        return extractContext(filePath);
+        return assemble(extractSectionsByFilename(filename));
     }
 
     @Override
@@ -131,19 +247,258 @@ public class DocumentServiceImpl implements DocumentService {
     }
 
     /**
-     * Extract context from a PDF file
+     * Get the sections of a document from the document cache, extracting them if missing
      */
-    private DocumentContext extractPdfContext(Path filePath) throws IOException {
-        try (PDDocument document = PDDocument.load(filePath.toFile())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            String text = stripper.getText(document);
+    private List<DocumentContext> extractSections(Path filePath) throws IOException {
+        String filename = filePath.getFileName().toString();
 
-            return DocumentContext.builder()
-                    .filename(filePath.getFileName().toString())
-                    .documentType(DocumentContext.DocumentType.PDF)
-                    .content(text)
-                    .pageNumber(document.getNumberOfPages()) // Total pages
-                    .build();
+        // Check if the document is already in the cache
+        List<DocumentContext> cached = documentCache.getIfPresent(filename);
+        if (cached != null) {
+            log.debug("Using cached context for document: {}", filename);
+            return cached;
+        }
+
+        // If not in cache, extract the context
+        return loadDocument(filePath, filename);
+    }
+
+    /**
+     * Get the sections of a document by name
+     */
+    private List<DocumentContext> extractSectionsByFilename(String filename) throws IOException {
+        Path filePath = Paths.get(documentsPath, filename);
+        if (!Files.exists(filePath)) {
+            throw new IOException("File not found: " + filename);
+        }
+        return extractSections(filePath);
+    }
+
+    @Override
+    public DocumentContext reloadDocument(String filename) throws IOException {
+        documentCache.invalidate(filename);
+        extractedDocuments.remove(filename);
+        return extractContextByFilename(filename);
+    }
+
+    @Override
+    public boolean removeDocument(String filename) {
+        List<DocumentContext> removed = documentCache.asMap().remove(filename);
+        boolean extracted = extractedDocuments.remove(filename);
+        keywordIndex.remove(filename);
+        if (extractionCache != null) {
+            extractionCache.remove(Paths.get(documentsPath, filename));
+        }
+        if (embeddingsEnabled) {
+            embeddingPipeline.cancel(filename);
+            embeddingService.removeDocumentEmbedding(filename);
+        }
+        if (removed != null || extracted) {
+            log.info("Removed deleted document: {}", filename);
+        }
+        return removed != null || extracted;
+    }
+
+    @Override
+    public Set<String> getIndexedDocuments() {
+        Set<String> indexed = new HashSet<>(extractedDocuments);
+        indexed.addAll(documentCache.asMap().keySet());
+        if (embeddingsEnabled) {
+            indexed.addAll(embeddingService.getEmbeddedDocuments());
+        }
+        return indexed;
+    }
+
+    /**
+     * Extract a document missing from the document cache and cache its sections. The first
+     * extraction indexes each section for keyword search and queues its passages for embedding
+     * as soon as it is read; after an eviction the text is only reloaded, which the extraction
+     * cache makes cheap when enabled.
+     */
+    private List<DocumentContext> loadDocument(Path filePath, String filename) throws IOException {
+        boolean index = extractedDocuments.add(filename);
+        List<DocumentContext> sections;
+        try {
+            sections = parseDocument(filePath, index ? section -> indexSection(filename, section) : section -> { });
+        } catch (IOException | RuntimeException e) {
+            if (index) {
+                // Drop the partial keyword entry so the next request extracts the document again;
+                // passages already queued are the file's current text and are still embedded
+                extractedDocuments.remove(filename);
+                keywordIndex.remove(filename);
+            }
+            throw e;
+        }
+        if (index && embeddingsEnabled) {
+            embeddingService.completeDocumentSections(filename);
+        }
+
+        // Store in cache for future use
+        documentCache.put(filename, sections);
+        return sections;
+    }
+
+    /**
+     * Index one extracted section for keyword search and queue its passages for embedding.
+     * The section starting on the first page replaces what was indexed for the document before.
+     */
+    private void indexSection(String filename, DocumentContext section) {
+        String content = section.getContent() != null ? section.getContent() : "";
+        boolean first = section.getPageNumber() == null || section.getPageNumber() <= 1;
+        if (first) {
+            keywordIndex.add(filename, filename + "\n" + content);
+        } else {
+            keywordIndex.append(filename, content);
+        }
+
+        // Embed in the background; keyword matching covers the document until its vectors are ready
+        if (embeddingsEnabled) {
+            embeddingPipeline.submit(filename, embeddingService.addDocumentSection(filename, section));
+        }
+    }
+
+    /**
+     * The whole text of a document in one context, assembled from its sections for callers
+     * that need it in one piece
+     */
+    private static DocumentContext assemble(List<DocumentContext> sections) {
+        if (sections.size() == 1) {
+            return sections.get(0);
+        }
+        DocumentContext first = sections.get(0);
+        StringBuilder content = new StringBuilder();
+        for (DocumentContext section : sections) {
+            if (section.getContent() != null) {
+                content.append(section.getContent());
+            }
+        }
+        return DocumentContext.builder()
+                .filename(first.getFilename())
+                .documentType(first.getDocumentType())
+                .content(content.toString())
+                .pageNumber(first.getPageNumber())
+                .pageCount(first.getPageCount())
+                .build();
+    }
+
+    /**
+     * Approximate heap size of the text of a document's sections, in bytes
+     */
+    private static int weigh(List<DocumentContext> sections) {
+        long bytes = 0;
+        for (DocumentContext section : sections) {
+            String content = section.getContent();
+            bytes += content != null ? (long) content.length() * Character.BYTES : 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    /**
+     * Extract the sections of a document file, reusing the on-disk extraction if the file is
+     * unchanged. Each section is handed to the consumer as soon as it is available.
+     */
+    private List<DocumentContext> parseDocument(Path filePath, Consumer<DocumentContext> sectionConsumer)
+            throws IOException {
+        if (extractionCache == null) {
+            return parseDocumentFile(filePath, sectionConsumer);
+        }
+        List<DocumentContext> cached = extractionCache.get(filePath);
+        if (cached != null) {
+            log.debug("Using extraction cache for document: {}", filePath.getFileName());
+            cached.forEach(sectionConsumer);
+            return cached;
+        }
+        // Taken first, so that a file rewritten while it is parsed is not cached as unchanged
+        ExtractionCache.FileState state = extractionCache.state(filePath);
+        List<DocumentContext> sections = parseDocumentFile(filePath, sectionConsumer);
+        extractionCache.put(filePath, state, sections);
+        return sections;
+    }
+
+    /**
+     * Extract the sections of a document file based on its extension
+     */
+    private List<DocumentContext> parseDocumentFile(Path filePath, Consumer<DocumentContext> sectionConsumer)
+            throws IOException {
+        String filename = filePath.getFileName().toString();
+        String lowercaseFilename = filename.toLowerCase();
+
+        // Wait for room in the parse budget; a file larger than the budget is parsed alone
+        try (ByteBudget.Lease lease = parseBudget.acquire(Files.size(filePath))) {
+            // Give the room back even if a timed out parse never returns
+            ExtractionExecutor.closeOnTimeout(lease);
+            if (lowercaseFilename.endsWith(".pdf")) {
+                return extractPdfContext(filePath, sectionConsumer);
+            } else if (lowercaseFilename.endsWith(".ppt") || lowercaseFilename.endsWith(".pptx")) {
+                return single(extractPptContext(filePath), sectionConsumer);
+            } else if (lowercaseFilename.endsWith(".txt")) {
+                return single(extractTxtContext(filePath), sectionConsumer);
+            } else {
+                throw new IOException("Unsupported file format: " + filename);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to parse: " + filename, e);
+        }
+    }
+
+    /**
+     * Buffering for a PDF being loaded: main memory only, main memory up to a cap and then
+     * scratch files, or scratch files only
+     */
+    private MemoryUsageSetting pdfMemoryUsage() {
+        MemoryUsageSetting setting;
+        switch (pdfMemoryMode.trim().toLowerCase()) {
+            case "main":
+                setting = MemoryUsageSetting.setupMainMemoryOnly();
+                break;
+            case "temp-file":
+                setting = MemoryUsageSetting.setupTempFileOnly();
+                break;
+            default:
+                setting = MemoryUsageSetting.setupMixed(pdfMaxMainMemoryMb * 1024 * 1024);
+                break;
+        }
+        if (!pdfScratchPath.isEmpty()) {
+            setting.setTempDir(new File(pdfScratchPath));
+        }
+        return setting;
+    }
+
+    /**
+     * A document extracted in one piece, as its only section
+     */
+    private static List<DocumentContext> single(DocumentContext context, Consumer<DocumentContext> sectionConsumer) {
+        sectionConsumer.accept(context);
+        return Collections.singletonList(context);
+    }
+
+    /**
+     * Extract the sections of a PDF file, stripping a section of pages at a time and handing
+     * each on before the next is read
+     */
+    private List<DocumentContext> extractPdfContext(Path filePath, Consumer<DocumentContext> sectionConsumer)
+            throws IOException {
+        String filename = filePath.getFileName().toString();
+        try (PDDocument document = PDDocument.load(filePath.toFile(), pdfMemoryUsage())) {
+            // Closing the document on timeout fails a parse stuck inside a single page
+            ExtractionExecutor.closeOnTimeout(document);
+            List<DocumentContext> sections = new ArrayList<>();
+            new PdfPageExtractor(pdfPagesPerSection).extract(document, filename, section -> {
+                sections.add(section);
+                sectionConsumer.accept(section);
+            });
+            if (sections.isEmpty()) {
+                // A PDF without pages still replaces what was extracted from the file before
+                return single(DocumentContext.builder()
+                        .filename(filename)
+                        .documentType(DocumentContext.DocumentType.PDF)
+                        .content("")
+                        .pageNumber(1)
+                        .pageCount(0)
+                        .build(), sectionConsumer);
+            }
+            return sections;
         }
     }
 
@@ -151,7 +506,7 @@ public class DocumentServiceImpl implements DocumentService {
      * Extract context from a PPT file
      */
     private DocumentContext extractPptContext(Path filePath) throws IOException {
-        String filename = filePath.getFileName().toString().toLowerCase();
+        String filename = filePath.getFileName().toString();
         StringBuilder content = new StringBuilder();
 
         try (FileInputStream fis = new FileInputStream(filePath.toFile());
@@ -173,14 +528,16 @@ public class DocumentServiceImpl implements DocumentService {
                         }
                     }
                 }
-                content.append("\n");
+                // Blank line and page break between slides
+                content.append("\n\f");
             }
 
             return DocumentContext.builder()
                     .filename(filename)
                     .documentType(DocumentContext.DocumentType.PPT)
                     .content(content.toString())
-                    .pageNumber(ppt.getSlides().size()) // Total slides
+                    .pageNumber(1)
+                    .pageCount(ppt.getSlides().size())
                     .build();
         }
     }
@@ -189,7 +546,7 @@ public class DocumentServiceImpl implements DocumentService {
      * Extract context from a TXT file
      */
     private DocumentContext extractTxtContext(Path filePath) throws IOException {
-        String filename = filePath.getFileName().toString().toLowerCase();
+        String filename = filePath.getFileName().toString();
         String content = Files.readString(filePath);
         
         return DocumentContext.builder()
@@ -197,9 +554,76 @@ public class DocumentServiceImpl implements DocumentService {
                 .documentType(DocumentContext.DocumentType.TXT)
                 .content(content)
                 .pageNumber(1) // TXT files don't have pages, so we set it to 1
+                .pageCount(1)
                 .build();
     }
 
+    @Override
+    public List<DocumentChunk> findRelevantPassages(String prompt, List<String> filenames) {
+        Map<String, List<DocumentChunk>> passagesByDocument = new LinkedHashMap<>();
+        filenames.forEach(filename -> passagesByDocument.put(filename, new ArrayList<>()));
+        if (embeddingsEnabled) {
+            try {
+                for (DocumentChunk passage : embeddingService.findSimilarChunks(prompt, passagesByDocument.keySet(),
+                        maxPassagesPerDocument)) {
+                    passagesByDocument.get(passage.getDocumentId()).add(passage);
+                }
+            } catch (Exception e) {
+                log.warn("Error finding relevant passages using vector similarity: {}", e.getMessage());
+            }
+        }
+
+        // Documents awaiting embedding, or all of them without embeddings, are matched by keyword
+        int byKeyword = 0;
+        for (Map.Entry<String, List<DocumentChunk>> entry : passagesByDocument.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                entry.getValue().addAll(findKeywordPassages(prompt, entry.getKey()));
+                byKeyword++;
+            }
+        }
+
+        List<DocumentChunk> passages = new ArrayList<>();
+        passagesByDocument.values().forEach(passages::addAll);
+        log.info("Found {} relevant passages in {} documents, {} of them matched by keyword",
+                passages.size(), passagesByDocument.size(), byKeyword);
+        return passages;
+    }
+
+    /**
+     * Split a document into passages and rank them by BM25 against the prompt. Without any
+     * matching term, the opening passages are returned.
+     */
+    private List<DocumentChunk> findKeywordPassages(String prompt, String filename) {
+        List<DocumentContext> sections;
+        try {
+            sections = extractSectionsByFilename(filename);
+        } catch (IOException e) {
+            log.warn("Error extracting passages of document {}: {}", filename, e.getMessage());
+            return Collections.emptyList();
+        }
+        TextChunker chunker = new TextChunker(chunkSize, chunkOverlap);
+        List<DocumentChunk> chunks = new ArrayList<>();
+        for (DocumentContext section : sections) {
+            int firstPage = section.getPageNumber() != null ? section.getPageNumber() : 1;
+            String content = section.getContent() != null ? section.getContent() : "";
+            chunks.addAll(chunker.chunk(filename, content, firstPage, chunks.size()));
+        }
+
+        Bm25Index passageIndex = new Bm25Index();
+        for (DocumentChunk chunk : chunks) {
+            passageIndex.add(Integer.toString(chunk.getChunkIndex()), chunk.getContent());
+        }
+        List<SearchResult> ranked = passageIndex.search(Tokenizer.keywords(prompt), maxPassagesPerDocument);
+        if (ranked.isEmpty()) {
+            return new ArrayList<>(chunks.subList(0, Math.min(chunks.size(), Math.max(0, maxPassagesPerDocument))));
+        }
+        List<DocumentChunk> passages = new ArrayList<>(ranked.size());
+        for (SearchResult result : ranked) {
+            passages.add(chunks.get(Integer.parseInt(result.getId())).toBuilder().score(result.getScore()).build());
+        }
+        return passages;
+    }
+
     @Override
     public List<String> getAllDocuments() throws IOException {
         try (Stream<Path> paths = Files.list(Paths.get(documentsPath))) {
@@ -227,11 +651,14 @@ public class DocumentServiceImpl implements DocumentService {
         if (embeddingsEnabled) {
             try {
                 // Find similar documents using embeddings
-                Map<String, Float> similarityScores = embeddingService.findSimilarDocuments(prompt, 5);
+                List<SearchResult> similarDocuments = embeddingService.findSimilarDocuments(prompt, 5);
                 
-                if (!similarityScores.isEmpty()) {
-                    log.info("Found {} relevant documents using vector similarity", similarityScores.size());
-                    return new ArrayList<>(similarityScores.keySet());
+                if (!similarDocuments.isEmpty()) {
+                    log.info("Found {} relevant documents using vector similarity", similarDocuments.size());
+                    List<String> relevant = similarDocuments.stream()
+                            .map(SearchResult::getId)
+                            .collect(Collectors.toList());
+                    return mergeDocumentsAwaitingEmbedding(prompt, allDocuments, relevant);
                 } else {
                     log.info("No documents found using vector similarity, falling back to keyword matching");
                 }
@@ -242,101 +669,154 @@ public class DocumentServiceImpl implements DocumentService {
 
         // Fall back to keyword-based search if embeddings are disabled or failed
         log.info("Using keyword-based search for document relevance");
-        
+        return rankByKeywords(prompt, allDocuments);
+    }
+
+    /**
+     * Add keyword matches among documents whose embeddings are not ready yet, alternating
+     * them with the vector matches so neither kind crowds out the other
+     */
+    private List<String> mergeDocumentsAwaitingEmbedding(String prompt, List<String> allDocuments,
+                                                         List<String> vectorMatches) {
+        List<String> awaiting = allDocuments.stream()
+                .filter(filename -> {
+                    EmbeddingStatus status = embeddingPipeline.getStatus(filename);
+                    return status != null && status != EmbeddingStatus.READY;
+                })
+                .collect(Collectors.toList());
+        if (awaiting.isEmpty()) {
+            return vectorMatches;
+        }
+
+        List<String> keywordMatches = rankByKeywords(prompt, awaiting);
+        log.info("Found {} relevant documents by keyword among {} awaiting embeddings",
+                keywordMatches.size(), awaiting.size());
+        List<String> merged = new ArrayList<>();
+        for (int i = 0; merged.size() < 5 && (i < vectorMatches.size() || i < keywordMatches.size()); i++) {
+            if (i < vectorMatches.size() && !merged.contains(vectorMatches.get(i))) {
+                merged.add(vectorMatches.get(i));
+            }
+            if (merged.size() < 5 && i < keywordMatches.size() && !merged.contains(keywordMatches.get(i))) {
+                merged.add(keywordMatches.get(i));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Rank documents by BM25 over the keyword index, counting terms a few edits away from a
+     * keyword at a lower weight, then lift the best candidates that contain prompt phrases
+     *
+     * @return Up to 5 filenames, most relevant first
+     */
+    private List<String> rankByKeywords(String prompt, List<String> allDocuments) {
         // Extract keywords from the prompt
-        List<String> keywords = extractKeywords(prompt);
+        List<String> keywords = Tokenizer.keywords(prompt);
         
         if (keywords.isEmpty()) {
             log.warn("No meaningful keywords extracted from prompt: {}", prompt);
             return new ArrayList<>();
         }
 
-        // Create a map to store document relevance scores
-        Map<String, Double> documentScores = new ConcurrentHashMap<>();
-
-        // Process documents in parallel for better performance
-        allDocuments.parallelStream().forEach(filename -> {
+        // Documents are indexed when first extracted; extract any that have not been yet
+        List<String> unindexed = allDocuments.stream()
+                .filter(filename -> !keywordIndex.contains(filename))
+                .collect(Collectors.toList());
+        extractionExecutor.map(unindexed, filename -> {
             try {
-                // First, check if the filename contains any keywords (quick check)
-                String lowercaseFilename = filename.toLowerCase();
-                boolean filenameMatch = keywords.stream()
-                        .anyMatch(keyword -> lowercaseFilename.contains(keyword.toLowerCase()));
-                
-                // Initialize score based on filename match
-                double score = filenameMatch ? 0.3 : 0.0;
-                
-                // Extract document content if not already in cache
-                DocumentContext docContext;
-                try {
-                    docContext = extractContextByFilename(filename);
-                } catch (IOException e) {
-                    log.error("Error extracting context from file: {}", filename, e);
-                    return; // Skip this document
-                }
-                
-                // If we have content, search through it
-                if (docContext != null && docContext.getContent() != null) {
-                    String content = docContext.getContent().toLowerCase();
-                    
-                    // Calculate content match score
-                    double contentScore = calculateContentScore(content, keywords, prompt.toLowerCase());
-                    
-                    // Combine scores
-                    score += contentScore;
-                    
-                    // Store the score if it's above threshold
-                    if (score > 0.1) {
-                        documentScores.put(filename, score);
-                    }
-                }
-            } catch (Exception e) {
-                log.error("Error processing document for relevance: {}", filename, e);
+                return extractSectionsByFilename(filename);
+            } catch (IOException e) {
+                log.error("Error extracting context from file: {}", filename, e);
+                return null;
             }
         });
-        
-        // Sort documents by relevance score (descending) and return top results
-        return documentScores.entrySet().stream()
-                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
-                .limit(5) // Limit to top 5 most relevant documents
-                .map(Map.Entry::getKey)
+
+        Map<String, Float> weightedTerms = new LinkedHashMap<>();
+        for (String keyword : keywords) {
+            weightedTerms.put(keyword, 1.0f);
+        }
+        for (String keyword : keywords) {
+            for (Map.Entry<String, Integer> fuzzy : findFuzzyTerms(keyword).entrySet()) {
+                // Each edit halves the weight of the match
+                float weight = FUZZY_TERM_WEIGHT / (1 << (fuzzy.getValue() - 1));
+                weightedTerms.merge(fuzzy.getKey(), weight, Math::max);
+            }
+        }
+
+        Set<String> candidates = new HashSet<>(allDocuments);
+        List<SearchResult> ranked = keywordIndex.search(weightedTerms, PHRASE_CANDIDATES, candidates::contains);
+        if (ranked.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Phrase checks only read the text of the best candidates, once each
+        PhraseMatcher phraseMatcher = compilePhrases(prompt.toLowerCase());
+        TopKSelector selector = new TopKSelector(5);
+        for (int i = 0; i < ranked.size(); i++) {
+            SearchResult result = ranked.get(i);
+            double boost = 0.0;
+            try {
+                boost = calculatePhraseScore(extractSectionsByFilename(result.getId()), phraseMatcher);
+            } catch (IOException e) {
+                log.error("Error extracting context from file: {}", result.getId(), e);
+            }
+            selector.offer(i, (float) (result.getScore() * (1.0 + boost)));
+        }
+        return selector.drainResults(i -> ranked.get(i).getId()).stream()
+                .map(SearchResult::getId)
                 .collect(Collectors.toList());
     }
     
     /**
-     * Calculate content relevance score based on keyword matches and fuzzy matching
+     * Compile the prompt (pattern 0) and its 3-word fragments into one matcher
      */
-    private double calculateContentScore(String content, List<String> keywords, String originalPrompt) {
-        double score = 0.0;
+    private PhraseMatcher compilePhrases(String originalPrompt) {
+        List<String> phrases = new ArrayList<>();
+        phrases.add(originalPrompt);
         
-        // Check for exact keyword matches
-        for (String keyword : keywords) {
-            // Count occurrences of the keyword in content
-            int occurrences = countOccurrences(content, keyword.toLowerCase());
-            if (occurrences > 0) {
-                // Add score based on number of occurrences (with diminishing returns)
-                score += Math.min(0.2, 0.05 * occurrences);
+        // Sentence fragments (3+ word sequences)
+        String[] promptWords = originalPrompt.split("\\s+");
+        if (promptWords.length >= 3) {
+            for (int i = 0; i <= promptWords.length - 3; i++) {
+                phrases.add(promptWords[i] + " " + promptWords[i+1] + " " + promptWords[i+2]);
+            }
+        }
+        return new PhraseMatcher(phrases);
+    }
+    
+    /**
+     * Calculate a relevance boost for a document containing the prompt or 3-word fragments of it,
+     * counting every phrase in a single pass over each section of its content
+     */
+    private double calculatePhraseScore(List<DocumentContext> sections, PhraseMatcher phraseMatcher) {
+        int[] counts = null;
+        for (DocumentContext section : sections) {
+            if (section.getContent() == null) {
+                continue;
             }
-            
-            // Check for fuzzy matches (keywords with one character different)
-            List<String> fuzzyMatches = findFuzzyMatches(content, keyword.toLowerCase());
-            if (!fuzzyMatches.isEmpty()) {
-                score += Math.min(0.1, 0.02 * fuzzyMatches.size());
+            int[] sectionCounts = phraseMatcher.count(section.getContent());
+            if (counts == null) {
+                counts = sectionCounts;
+            } else {
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] += sectionCounts[i];
+                }
             }
         }
+        if (counts == null) {
+            return 0.0;
+        }
+        double score = 0.0;
         
-        // Check for exact phrase matches (higher weight)
-        if (content.contains(originalPrompt)) {
+        // Exact phrase matches (higher weight)
+        if (counts[0] > 0) {
             score += 0.5;
         }
         
-        // Check for sentence fragments (3+ word sequences)
-        String[] promptWords = originalPrompt.split("\\s+");
-        if (promptWords.length >= 3) {
-            for (int i = 0; i <= promptWords.length - 3; i++) {
-                String fragment = promptWords[i] + " " + promptWords[i+1] + " " + promptWords[i+2];
-                if (content.contains(fragment)) {
-                    score += 0.3;
-                }
+        // Sentence fragments
+        for (int i = 1; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                score += 0.3;
             }
         }
         
@@ -344,104 +824,24 @@ public class DocumentServiceImpl implements DocumentService {
     }
     
     /**
-     * Count occurrences of a substring in a string
+     * Find indexed terms within a few edits of a keyword: one edit for medium keywords,
+     * two for long ones. Each maps to its distance.
      */
-    private int countOccurrences(String text, String substring) {
-        int count = 0;
-        int index = 0;
-        while ((index = text.indexOf(substring, index)) != -1) {
-            count++;
-            index += substring.length();
-        }
-        return count;
-    }
-    
-    /**
-     * Find fuzzy matches for a keyword in text
-     * This implements a simple edit distance of 1 character
-     */
-    private List<String> findFuzzyMatches(String text, String keyword) {
-        List<String> matches = new ArrayList<>();
+    private Map<String, Integer> findFuzzyTerms(String keyword) {
+        Map<String, Integer> matches = new HashMap<>();
         
         // Only apply fuzzy matching for keywords of reasonable length
         if (keyword.length() < 4) {
             return matches;
         }
         
-        // Split text into words
-        String[] words = text.split("\\s+");
-        
-        for (String word : words) {
-            // Skip words with big length difference
-            if (Math.abs(word.length() - keyword.length()) > 1) {
-                continue;
-            }
-            
-            // Check edit distance
-            if (word.equals(keyword)) {
-                continue; // Skip exact matches
+        int maxDistance = keyword.length() >= LONG_KEYWORD_LENGTH ? 2 : 1;
+        keywordIndex.forEachSimilarTerm(keyword, maxDistance, (term, distance) -> {
+            if (distance > 0) {
+                matches.put(term, distance);
             }
-            
-            if (calculateEditDistance(word, keyword) <= 1) {
-                matches.add(word);
-            }
-        }
+        });
         
         return matches;
     }
-    
-    /**
-     * Calculate Levenshtein edit distance between two strings
-     */
-    private int calculateEditDistance(String s1, String s2) {
-        int[] costs = new int[s2.length() + 1];
-        
-        for (int i = 0; i <= s1.length(); i++) {
-            int lastValue = i;
-            for (int j = 0; j <= s2.length(); j++) {
-                if (i == 0) {
-                    costs[j] = j;
-                } else if (j > 0) {
-                    int newValue = costs[j - 1];
-                    if (s1.charAt(i - 1) != s2.charAt(j - 1)) {
-                        newValue = Math.min(Math.min(newValue, lastValue), costs[j]) + 1;
-                    }
-                    costs[j - 1] = lastValue;
-                    lastValue = newValue;
-                }
-            }
-            if (i > 0) {
-                costs[s2.length()] = lastValue;
-            }
-        }
-        
-        return costs[s2.length()];
-    }
-
-    /**
-     * Extract keywords from a prompt
-     * This is a simple implementation that just splits the prompt by spaces and removes common words
-     */
-    private List<String> extractKeywords(String prompt) {
-        if (prompt == null || prompt.trim().isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // Convert to lowercase and split by non-alphanumeric characters
-        String[] words = prompt.toLowerCase().split("[^a-zA-Z0-9가-힣]+");
-
-        // Filter out common words and short words
-        List<String> commonWords = Arrays.asList("the", "a", "an", "and", "or", "but", "is", "are", "was", "were", 
-                                               "in", "on", "at", "to", "for", "with", "by", "about", "like", 
-                                               "through", "over", "before", "after", "between", "under", "during",
-                                               "of", "from", "up", "down", "into", "out", "as", "if", "when", 
-                                               "why", "how", "all", "any", "both", "each", "few", "more", "most",
-                                               "other", "some", "such", "no", "nor", "not", "only", "own", "same",
-                                               "so", "than", "too", "very", "can", "will", "just", "should", "now");
-
-        return Arrays.stream(words)
-                .filter(word -> word.length() > 2) // Filter out short words
-                .filter(word -> !commonWords.contains(word)) // Filter out common words
-                .collect(Collectors.toList());
-    }
 }
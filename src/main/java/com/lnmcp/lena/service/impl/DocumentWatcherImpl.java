@@ -0,0 +1,242 @@
+package com.lnmcp.lena.service.impl;
+
+import com.lnmcp.lena.service.DocumentService;
+import com.lnmcp.lena.service.DocumentWatcher;
+import com.lnmcp.lena.service.ResponseCacheService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Implementation of DocumentWatcher using {@link WatchService}. A watcher thread records the
+ * time of the latest event for each file name; a scheduled task picks up the files that have
+ * been quiet for the debounce delay, so a file written in several steps is processed once.
+ * Files still listed as documents are reloaded, the others are removed, and cached responses
+ * are evicted after every batch since they may quote the changed documents. When events are
+ * lost, every document on disk is reloaded and every indexed one that is gone is removed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentWatcherImpl implements DocumentWatcher {
+
+    @Value("${mcp.documents.path}")
+    private String documentsPath;
+
+    @Value("${mcp.documents.watch.enabled:true}")
+    private boolean watchEnabled;
+
+    @Value("${mcp.documents.watch.debounce-ms:1000}")
+    private long debounceMillis;
+
+    private final DocumentService documentService;
+
+    private final ResponseCacheService responseCacheService;
+
+    // Time of the latest event for each changed file name, in System.nanoTime() units
+    private final Map<String, Long> pendingChanges = new ConcurrentHashMap<>();
+
+    private volatile boolean rescanPending;
+
+    private WatchService watchService;
+
+    private ExecutorService watcherExecutor;
+
+    private ScheduledExecutorService reindexExecutor;
+
+    /**
+     * Register the documents directory and start the watcher and re-index threads
+     */
+    @PostConstruct
+    public void initialize() {
+        if (!watchEnabled) {
+            log.info("Document watching is disabled");
+            return;
+        }
+        Path directory = Paths.get(documentsPath);
+        if (!Files.isDirectory(directory)) {
+            log.warn("Documents directory {} does not exist, document watching is disabled", directory);
+            return;
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.error("Error watching documents directory {}", directory, e);
+            return;
+        }
+
+        watcherExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCP-Document-Watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcherExecutor.execute(this::runWatcher);
+
+        reindexExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCP-Document-Reindex");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(50, debounceMillis / 2);
+        reindexExecutor.scheduleWithFixedDelay(this::reindexQuietChanges, period, period, TimeUnit.MILLISECONDS);
+        log.info("Watching documents directory {} (debounce={} ms)", directory, debounceMillis);
+    }
+
+    /**
+     * Stop watching the documents directory
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (reindexExecutor != null) {
+            reindexExecutor.shutdownNow();
+        }
+        if (watcherExecutor != null) {
+            watcherExecutor.shutdownNow();
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("Error closing document watch service: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public boolean isWatching() {
+        return watcherExecutor != null && !watcherExecutor.isShutdown();
+    }
+
+    @Override
+    public int getPendingChanges() {
+        return pendingChanges.size();
+    }
+
+    /**
+     * Record directory events until the watch service is closed
+     */
+    private void runWatcher() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            recordEvents(key.pollEvents(), System.nanoTime());
+            if (!key.reset()) {
+                log.warn("Documents directory {} is no longer accessible, document watching stopped", documentsPath);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Note the time of each changed file name, or that the whole directory must be checked
+     * again when events were lost
+     */
+    void recordEvents(List<WatchEvent<?>> events, long now) {
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were lost; compare the whole directory with what is indexed
+                rescanPending = true;
+                continue;
+            }
+            Path name = (Path) event.context();
+            pendingChanges.put(name.toString(), now);
+        }
+    }
+
+    /**
+     * Reload or remove the documents whose files have been quiet for the debounce delay
+     */
+    void reindexQuietChanges() {
+        try {
+            long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+            Set<String> changed = new HashSet<>();
+            for (Map.Entry<String, Long> entry : pendingChanges.entrySet()) {
+                // Remove only if no newer event arrived in the meantime
+                if (entry.getValue() <= cutoff && pendingChanges.remove(entry.getKey(), entry.getValue())) {
+                    changed.add(entry.getKey());
+                }
+            }
+            boolean rescan = rescanPending;
+            if (changed.isEmpty() && !rescan) {
+                return;
+            }
+            rescanPending = false;
+
+            Set<String> documents = new HashSet<>(documentService.getAllDocuments());
+            if (rescan) {
+                // Documents deleted while events were lost are only known to what was indexed
+                Set<String> indexed = documentService.getIndexedDocuments();
+                log.info("Document watch events overflowed, re-checking all {} documents and {} indexed ones",
+                        documents.size(), indexed.size());
+                changed.addAll(documents);
+                changed.addAll(indexed);
+            }
+            reindex(changed, documents);
+        } catch (IOException e) {
+            log.error("Error listing documents for re-indexing", e);
+        } catch (RuntimeException e) {
+            log.error("Error re-indexing changed documents", e);
+        }
+    }
+
+    /**
+     * Reload or remove changed documents, then evict cached responses if anything changed
+     */
+    private void reindex(Set<String> changed, Set<String> documents) {
+        List<String> reloaded = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (String filename : changed) {
+            if (documents.contains(filename)) {
+                try {
+                    documentService.reloadDocument(filename);
+                    reloaded.add(filename);
+                } catch (IOException e) {
+                    log.error("Error re-extracting changed document: {}", filename, e);
+                }
+            } else if (documentService.removeDocument(filename)) {
+                // Deleted or renamed away; other names are temporary or unsupported files
+                removed.add(filename);
+            }
+        }
+
+        if (reloaded.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        responseCacheService.evictAll();
+        log.info("Re-indexed changed documents: {} reloaded {}, {} removed {}",
+                reloaded.size(), reloaded, removed.size(), removed);
+    }
+}
@@ -0,0 +1,345 @@
+package com.lnmcp.lena.service.impl;
+
+import com.lnmcp.lena.model.DocumentChunk;
+import com.lnmcp.lena.model.EmbeddingStatus;
+import com.lnmcp.lena.service.EmbeddingPipeline;
+import com.lnmcp.lena.service.EmbeddingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Implementation of EmbeddingPipeline backed by a bounded queue and a small pool of workers.
+ * Each worker takes a document, waits briefly for more to fill a batch, and stores the queued
+ * passages of the batch with {@link EmbeddingService#storePassageEmbeddings}. Documents whose
+ * passages are not all embedded afterwards are retried with exponential backoff. Submission
+ * never blocks: a document that finds the queue full waits in an overflow list, which holds at
+ * most one task per document, and workers move it into the queue as it drains.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddingPipelineImpl implements EmbeddingPipeline {
+
+    @Value("${mcp.embeddings.pipeline.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${mcp.embeddings.pipeline.workers:2}")
+    private int workers;
+
+    @Value("${mcp.embeddings.pipeline.batch-documents:8}")
+    private int batchDocuments;
+
+    @Value("${mcp.embeddings.pipeline.batch-wait-ms:50}")
+    private long batchWaitMillis;
+
+    @Value("${mcp.embeddings.pipeline.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${mcp.embeddings.pipeline.retry-backoff-ms:1000}")
+    private long retryBackoffMillis;
+
+    private final EmbeddingService embeddingService;
+
+    private final Map<String, EmbeddingStatus> statuses = new ConcurrentHashMap<>();
+
+    // Passages of each queued document; sections submitted while the document is queued join its task
+    private final Map<String, List<DocumentChunk>> pendingPassages = new ConcurrentHashMap<>();
+
+    private BlockingQueue<Task> queue;
+
+    // Tasks that found the queue full; guarded by itself and moved into the queue as workers free space
+    private final Deque<Task> overflow = new ArrayDeque<>();
+
+    private ExecutorService workerExecutor;
+
+    private ScheduledExecutorService retryExecutor;
+
+    /**
+     * Start the pipeline workers
+     */
+    @PostConstruct
+    public void initialize() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        int workerCount = Math.max(1, workers);
+        AtomicInteger workerThreads = new AtomicInteger();
+        workerExecutor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "MCP-Embedding-Pipeline-" + workerThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workerExecutor.execute(this::runWorker);
+        }
+
+        retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCP-Embedding-Retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Embedding pipeline started (workers={}, queue capacity={}, batch={} documents)",
+                workerCount, queueCapacity, batchDocuments);
+    }
+
+    /**
+     * Stop the pipeline workers; documents still queued are embedded on next extraction
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+        }
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
+        synchronized (overflow) {
+            overflow.clear();
+        }
+        if (!pendingPassages.isEmpty()) {
+            log.info("Embedding pipeline stopped with {} documents still queued", pendingPassages.size());
+        }
+    }
+
+    @Override
+    public boolean submit(String documentId, List<DocumentChunk> passages) {
+        if (passages == null || passages.isEmpty()) {
+            return false;
+        }
+
+        statuses.put(documentId, EmbeddingStatus.QUEUED);
+        // Passages numbered from the start of the document come from a new extraction
+        boolean restart = passages.get(0).getChunkIndex() == 0;
+        boolean[] alreadyQueued = new boolean[1];
+        pendingPassages.compute(documentId, (id, pending) -> {
+            if (pending == null || restart) {
+                alreadyQueued[0] = pending != null;
+                return new ArrayList<>(passages);
+            }
+            alreadyQueued[0] = true;
+            List<DocumentChunk> merged = new ArrayList<>(pending);
+            merged.addAll(passages);
+            return merged;
+        });
+        if (alreadyQueued[0]) {
+            // The worker picks up every passage queued for the document
+            return true;
+        }
+        // Never block extraction; a document holds at most one task, so parked tasks are
+        // bounded by the number of documents
+        Task task = new Task(documentId, 1);
+        if (!queue.offer(task)) {
+            log.info("Embedding queue is full, document waits for space: {}", documentId);
+            park(task);
+        }
+        return true;
+    }
+
+    @Override
+    public void cancel(String documentId) {
+        pendingPassages.remove(documentId);
+        statuses.remove(documentId);
+    }
+
+    @Override
+    public EmbeddingStatus getStatus(String documentId) {
+        return statuses.get(documentId);
+    }
+
+    @Override
+    public boolean isReady(String documentId) {
+        return statuses.get(documentId) == EmbeddingStatus.READY;
+    }
+
+    @Override
+    public Map<String, EmbeddingStatus> getStatuses() {
+        return new HashMap<>(statuses);
+    }
+
+    /**
+     * Take batches of documents from the queue until the worker is interrupted
+     */
+    private void runWorker() {
+        List<Task> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                drainOverflow();
+                // Give other submissions a moment to join the batch
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWaitMillis);
+                while (batch.size() < batchDocuments) {
+                    Task next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    drainOverflow();
+                }
+                embedBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Error in embedding pipeline worker", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Embed a batch of documents and record which ones are ready
+     */
+    private void embedBatch(List<Task> batch) {
+        Map<String, List<DocumentChunk>> passagesById = new LinkedHashMap<>();
+        Map<String, Integer> attempts = new HashMap<>();
+        List<DocumentChunk> passages = new ArrayList<>();
+        for (Task task : batch) {
+            List<DocumentChunk> pending = pendingPassages.remove(task.documentId);
+            if (pending != null) {
+                passagesById.put(task.documentId, pending);
+                attempts.put(task.documentId, task.attempt);
+                passages.addAll(pending);
+                statuses.put(task.documentId, EmbeddingStatus.EMBEDDING);
+            }
+        }
+        if (passagesById.isEmpty()) {
+            return;
+        }
+
+        try {
+            embeddingService.storePassageEmbeddings(passages);
+        } catch (Exception e) {
+            log.warn("Failed to generate embeddings for {} documents: {}", passagesById.size(), e.getMessage());
+        }
+
+        for (Map.Entry<String, List<DocumentChunk>> entry : passagesById.entrySet()) {
+            String documentId = entry.getKey();
+            if (pendingPassages.computeIfPresent(documentId, (id, pending) -> {
+                // More sections were submitted while this batch ran; this batch's passages go
+                // with them, and those already embedded are skipped when stored again
+                List<DocumentChunk> merged = new ArrayList<>(entry.getValue());
+                merged.addAll(pending);
+                return merged;
+            }) != null) {
+                continue;
+            }
+            if (!statuses.containsKey(documentId)) {
+                // Cancelled while this batch ran
+                embeddingService.removeDocumentEmbedding(documentId);
+                continue;
+            }
+            if (embeddingService.hasDocumentEmbedding(documentId)) {
+                statuses.put(documentId, EmbeddingStatus.READY);
+                log.debug("Embeddings ready for document: {}", documentId);
+            } else {
+                scheduleRetry(documentId, entry.getValue(), attempts.get(documentId));
+            }
+        }
+    }
+
+    /**
+     * Queue a document again after a backoff, or mark it failed once it is out of attempts
+     */
+    private void scheduleRetry(String documentId, List<DocumentChunk> passages, int attempt) {
+        if (attempt >= maxAttempts) {
+            statuses.put(documentId, EmbeddingStatus.FAILED);
+            log.warn("Giving up on embeddings for document {} after {} attempts", documentId, attempt);
+            return;
+        }
+
+        statuses.put(documentId, EmbeddingStatus.QUEUED);
+        long delay = retryBackoffMillis << Math.min(attempt - 1, 10);
+        log.info("Retrying embeddings for document {} in {} ms (attempt {} of {})",
+                documentId, delay, attempt + 1, maxAttempts);
+        try {
+            retryExecutor.schedule(() -> requeue(documentId, passages, attempt + 1), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            statuses.put(documentId, EmbeddingStatus.FAILED);
+        }
+    }
+
+    private void requeue(String documentId, List<DocumentChunk> passages, int attempt) {
+        if (!statuses.containsKey(documentId)) {
+            // Cancelled while waiting to retry
+            return;
+        }
+        boolean[] alreadyQueued = new boolean[1];
+        pendingPassages.compute(documentId, (id, pending) -> {
+            if (pending == null) {
+                return new ArrayList<>(passages);
+            }
+            // Join the sections queued since; passages a newer extraction replaced are skipped when stored
+            alreadyQueued[0] = true;
+            List<DocumentChunk> merged = new ArrayList<>(passages);
+            merged.addAll(pending);
+            return merged;
+        });
+        if (alreadyQueued[0]) {
+            return;
+        }
+        Task task = new Task(documentId, attempt);
+        if (!queue.offer(task)) {
+            log.debug("Embedding queue is full, retry waits for space: {}", documentId);
+            park(task);
+        }
+    }
+
+    /**
+     * Hold a task that found the queue full until a worker frees space for it
+     */
+    private void park(Task task) {
+        synchronized (overflow) {
+            overflow.addLast(task);
+        }
+        // A worker may have emptied the queue before the task was parked; without this the
+        // task would wait for the next submission
+        drainOverflow();
+    }
+
+    /**
+     * Move parked tasks into the queue, oldest first, while it has room
+     */
+    private void drainOverflow() {
+        synchronized (overflow) {
+            while (!overflow.isEmpty() && queue.offer(overflow.peekFirst())) {
+                overflow.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * A queued document and the attempt it is on
+     */
+    private static final class Task {
+
+        private final String documentId;
+
+        private final int attempt;
+
+        Task(String documentId, int attempt) {
+            this.documentId = documentId;
+            this.attempt = attempt;
+        }
+    }
+}
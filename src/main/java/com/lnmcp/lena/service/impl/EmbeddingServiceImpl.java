@@ -1,6 +1,32 @@
 package com.lnmcp.lena.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lnmcp.lena.model.DocumentChunk;
+import com.lnmcp.lena.model.DocumentContext;
+import com.lnmcp.lena.search.ScoreTable;
+import com.lnmcp.lena.search.SearchResult;
+import com.lnmcp.lena.search.TopKSelector;
 import com.lnmcp.lena.service.EmbeddingService;
+import com.lnmcp.lena.service.ResponseCacheService;
+import com.lnmcp.lena.text.TextChunker;
+import com.lnmcp.lena.util.ContentHash;
+import com.lnmcp.lena.vector.BinaryIndex;
+import com.lnmcp.lena.vector.EmbeddingCache;
+import com.lnmcp.lena.vector.EmbeddingFile;
+import com.lnmcp.lena.vector.HnswIndex;
+import com.lnmcp.lena.vector.IndexGeneration;
+import com.lnmcp.lena.vector.IvfIndex;
+import com.lnmcp.lena.vector.PartitionedScan;
+import com.lnmcp.lena.vector.SearchMode;
+import com.lnmcp.lena.vector.SlotScores;
+import com.lnmcp.lena.vector.VectorIndex;
+import com.lnmcp.lena.vector.VectorMath;
+import com.lnmcp.lena.vector.VectorPrecision;
+import com.lnmcp.lena.vector.VectorStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,13 +37,31 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -34,19 +78,361 @@ public class EmbeddingServiceImpl implements EmbeddingService {
     @Value("${spring.ai.ollama.embedding.model:llama2}")
     private String embeddingModel;
 
+    @Value("${mcp.embeddings.search.mode:exact}")
+    private String searchModeName;
+
+    @Value("${mcp.embeddings.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${mcp.embeddings.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${mcp.embeddings.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    @Value("${mcp.embeddings.ivf.nlist:0}")
+    private int ivfNlist;
+
+    @Value("${mcp.embeddings.ivf.nprobe:8}")
+    private int ivfNprobe;
+
+    @Value("${mcp.embeddings.ivf.min-training-vectors:1024}")
+    private int ivfMinTrainingVectors;
+
+    @Value("${mcp.embeddings.ivf.retrain-growth:0.5}")
+    private double ivfRetrainGrowth;
+
+    @Value("${mcp.embeddings.binary.candidates:256}")
+    private int binaryCandidates;
+
+    @Value("${mcp.embeddings.migration.enabled:true}")
+    private boolean migrationEnabled;
+
+    @Value("${mcp.embeddings.migration.passages-per-second:20}")
+    private double migrationPassagesPerSecond;
+
+    @Value("${mcp.embeddings.migration.content-wait-seconds:300}")
+    private long migrationContentWaitSeconds;
+
+    @Value("${mcp.embeddings.persistence.enabled:true}")
+    private boolean persistenceEnabled;
+
+    @Value("${mcp.embeddings.persistence.path:./data/embeddings.bin}")
+    private String persistencePath;
+
+    @Value("${mcp.embeddings.persistence.flush-delay-seconds:30}")
+    private long flushDelaySeconds;
+
+    @Value("${mcp.embeddings.batch.size:32}")
+    private int batchSize;
+
+    @Value("${mcp.embeddings.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    @Value("${mcp.embeddings.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${mcp.embeddings.cache.max-entries:10000}")
+    private long cacheMaxEntries;
+
+    @Value("${mcp.embeddings.cache.disk.enabled:false}")
+    private boolean diskCacheEnabled;
+
+    @Value("${mcp.embeddings.cache.disk.path:./data/embedding-cache}")
+    private String diskCachePath;
+
+    @Value("${mcp.embeddings.chunk.size:1000}")
+    private int chunkSize;
+
+    @Value("${mcp.embeddings.chunk.overlap:200}")
+    private int chunkOverlap;
+
+    @Value("${mcp.embeddings.chunk.candidates-per-result:4}")
+    private int chunkCandidatesPerResult;
+
+    @Value("${mcp.embeddings.quantization.mode:none}")
+    private String quantizationMode;
+
+    @Value("${mcp.embeddings.quantization.rerank-factor:4}")
+    private int rerankFactor;
+
+    @Value("${mcp.embeddings.quantization.row-path:}")
+    private String quantizationRowPath;
+
+    @Value("${mcp.embeddings.query-cache.enabled:true}")
+    private boolean queryCacheEnabled;
+
+    @Value("${mcp.embeddings.query-cache.max-entries:1000}")
+    private long queryCacheMaxEntries;
+
+    @Value("${mcp.embeddings.query-cache.ttl-seconds:600}")
+    private long queryCacheTtlSeconds;
+
+    @Value("${mcp.embeddings.query-cache.normalize-keys:false}")
+    private boolean queryCacheNormalizeKeys;
+
+    @Value("${mcp.cache.stats-log-seconds:300}")
+    private long cacheStatsLogSeconds;
+
+    @Value("${mcp.embeddings.scan.parallel-threshold:20000}")
+    private int parallelScanThreshold;
+
+    @Value("${mcp.embeddings.scan.parallelism:0}")
+    private int scanParallelism;
+
+    @Value("${mcp.embeddings.scan.partition-slots:1024}")
+    private int scanPartitionSlots;
+
     private final RestTemplate restTemplate;
 
-    // In-memory storage for document embeddings
-    private final Map<String, List<Float>> documentEmbeddings = new ConcurrentHashMap<>();
+    private final ResponseCacheService responseCacheService;
+
+    // Storage precision of every generation's vectors, a primitive float or int8 slab
+    private VectorPrecision precision = VectorPrecision.FLOAT32;
+
+    private SearchMode searchMode = SearchMode.EXACT;
+
+    // Passage embeddings that serve searches, all produced by one embedding model
+    private volatile IndexGeneration generation;
+
+    // Generation being built for a newly configured embedding model, or null
+    private volatile IndexGeneration nextGeneration;
+
+    private final AtomicLong generationNumbers = new AtomicLong();
+
+    // Re-embeds passages into the next generation at a throttled rate
+    private ScheduledExecutorService migrationExecutor;
+
+    private volatile long migrationProgressMillis;
+
+    // Set when the vector store has changes that are not yet written to disk
+    private final AtomicBoolean dirty = new AtomicBoolean();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    private ScheduledExecutorService flushExecutor;
+
+    // Logs cache statistics while the caches are in use
+    private ScheduledExecutorService cacheStatsExecutor;
+
+    // Cache requests at the last periodic log; only used on the cache statistics thread
+    private long loggedCacheRequests;
+
+    // Runs batched embedding requests concurrently
+    private ExecutorService batchExecutor;
+
+    // Scores large stores on a dedicated pool rather than the common pool
+    private ForkJoinPool scanPool;
+
+    private PartitionedScan partitionedScan;
+
+    // Trains the IVF coarse quantizer in the background as embeddings are added
+    private ExecutorService indexTrainingExecutor;
+
+    // Rebuilds the approximate index over embeddings loaded from disk, so startup does not wait for it
+    private ExecutorService indexRebuildExecutor;
+
+    // Embeddings keyed by content hash, so identical text is embedded only once
+    private EmbeddingCache embeddingCache;
+
+    // Query embeddings keyed by prompt, kept apart from document passages so neither evicts the other
+    private Cache<String, float[]> queryEmbeddingCache;
+
+    private TextChunker chunker;
+
+    // Passage metadata keyed by chunk id ("documentId#chunkIndex")
+    private final Map<String, DocumentChunk> chunksById = new ConcurrentHashMap<>();
+
+    // Chunk ids of each document, in document order
+    private final Map<String, List<String>> chunkIdsByDocument = new ConcurrentHashMap<>();
+
+    /**
+     * Create the vector index for the configured search mode and load persisted embeddings
+     */
+    @PostConstruct
+    public void initialize() {
+        precision = VectorPrecision.fromString(quantizationMode);
+        if (precision == VectorPrecision.INT8) {
+            log.info("Storing embeddings as int8 codes, re-ranking the top {}x candidates at full precision",
+                    rerankFactor);
+        }
+
+        searchMode = SearchMode.fromString(searchModeName);
+        if (searchMode == SearchMode.HNSW) {
+            log.info("Using HNSW vector index (m={}, efConstruction={}, efSearch={})",
+                    hnswM, hnswEfConstruction, hnswEfSearch);
+        } else if (searchMode == SearchMode.IVF) {
+            indexTrainingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MCP-Ivf-Train");
+                thread.setDaemon(true);
+                return thread;
+            });
+            log.info("Using IVF vector index (nlist={}, nprobe={}, minTrainingVectors={}, retrainGrowth={})",
+                    ivfNlist > 0 ? ivfNlist : "auto", ivfNprobe, ivfMinTrainingVectors, ivfRetrainGrowth);
+        } else if (searchMode == SearchMode.BINARY) {
+            log.info("Using sign-bit prefilter, re-ranking the {} nearest fingerprints exactly", binaryCandidates);
+        } else {
+            log.info("Using exact vector search");
+        }
+        log.info("Vector similarity kernel: {}", VectorMath.isSimdEnabled() ? "SIMD (JDK Vector API)" : "scalar");
+        generation = createGeneration(embeddingModel);
+
+        chunker = new TextChunker(chunkSize, chunkOverlap);
+
+        if (cacheEnabled) {
+            embeddingCache = new EmbeddingCache(cacheMaxEntries, diskCacheEnabled ? Paths.get(diskCachePath) : null);
+            log.info("Embedding cache enabled (max entries={}, disk tier={})",
+                    cacheMaxEntries, diskCacheEnabled ? diskCachePath : "disabled");
+        }
+
+        if (queryCacheEnabled) {
+            queryEmbeddingCache = Caffeine.newBuilder()
+                    .maximumSize(queryCacheMaxEntries)
+                    .expireAfterWrite(Duration.ofSeconds(queryCacheTtlSeconds))
+                    .recordStats()
+                    .build();
+            log.info("Query embedding cache enabled (max entries={}, ttl={}s, normalized keys={})",
+                    queryCacheMaxEntries, queryCacheTtlSeconds, queryCacheNormalizeKeys);
+        }
+
+        if ((embeddingCache != null || queryEmbeddingCache != null) && cacheStatsLogSeconds > 0) {
+            cacheStatsExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MCP-Embedding-Cache-Stats");
+                thread.setDaemon(true);
+                return thread;
+            });
+            cacheStatsExecutor.scheduleWithFixedDelay(this::logCacheStatsIfUsed, cacheStatsLogSeconds,
+                    cacheStatsLogSeconds, TimeUnit.SECONDS);
+        }
+
+        if (searchMode == SearchMode.EXACT) {
+            int parallelism = scanParallelism > 0 ? scanParallelism : Runtime.getRuntime().availableProcessors();
+            scanPool = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("MCP-Vector-Scan-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+            partitionedScan = new PartitionedScan(scanPool, scanPartitionSlots);
+            log.info("Parallel vector scan above {} vectors (parallelism={}, partition={} slots)",
+                    parallelScanThreshold, parallelism, scanPartitionSlots);
+        }
+
+        AtomicInteger batchThreads = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(Math.max(1, batchConcurrency), runnable -> {
+            Thread thread = new Thread(runnable, "MCP-Embedding-Batch-" + batchThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (persistenceEnabled) {
+            flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "MCP-Embedding-Flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            loadPersistedEmbeddings();
+        }
+    }
+
+    /**
+     * Create an empty generation with the configured precision and search index
+     */
+    private IndexGeneration createGeneration(String model) {
+        VectorStore store = precision == VectorPrecision.INT8
+                ? new VectorStore(precision, quantizationRowPath.isEmpty() ? null : Paths.get(quantizationRowPath))
+                : new VectorStore();
+        VectorIndex index = null;
+        if (searchMode == SearchMode.HNSW) {
+            index = new HnswIndex(store, hnswM, hnswEfConstruction, hnswEfSearch);
+        } else if (searchMode == SearchMode.IVF) {
+            index = new IvfIndex(store, ivfNlist, ivfNprobe, ivfMinTrainingVectors, ivfRetrainGrowth,
+                    indexTrainingExecutor);
+        } else if (searchMode == SearchMode.BINARY) {
+            index = new BinaryIndex(store, binaryCandidates);
+        }
+        return new IndexGeneration(generationNumbers.incrementAndGet(), model, store, index);
+    }
+
+    /**
+     * Write pending embeddings to disk on shutdown
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (cacheStatsExecutor != null) {
+            cacheStatsExecutor.shutdownNow();
+        }
+        if (queryEmbeddingCache != null) {
+            logCacheStats("Query embedding cache", queryEmbeddingCache.stats());
+        }
+        if (embeddingCache != null) {
+            logCacheStats("Embedding cache", embeddingCache.stats());
+        }
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+        if (scanPool != null) {
+            scanPool.shutdownNow();
+        }
+        if (indexTrainingExecutor != null) {
+            indexTrainingExecutor.shutdownNow();
+        }
+        if (indexRebuildExecutor != null) {
+            indexRebuildExecutor.shutdownNow();
+        }
+        if (migrationExecutor != null) {
+            migrationExecutor.shutdownNow();
+        }
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+            flushEmbeddings();
+        }
+        generation.close();
+        IndexGeneration next = nextGeneration;
+        if (next != null) {
+            next.close();
+        }
+    }
 
     @Override
     public List<Float> generateEmbedding(String text) {
+        return generateEmbedding(embeddingModel, text);
+    }
+
+    /**
+     * Generate an embedding for a text with a specific model
+     */
+    private List<Float> generateEmbedding(String model, String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        if (embeddingCache == null) {
+            return requestEmbedding(model, text);
+        }
+
+        long key = EmbeddingCache.key(model, text);
+        float[] cached = embeddingCache.get(key);
+        if (cached != null) {
+            log.debug("Embedding cache hit for text of length {}", text.length());
+            return VectorMath.toList(cached);
+        }
+
+        List<Float> embedding = requestEmbedding(model, text);
+        if (!embedding.isEmpty()) {
+            embeddingCache.put(key, VectorMath.toArray(embedding));
+        }
+        return embedding;
+    }
+
+    /**
+     * Generate an embedding with Ollama's /api/embeddings endpoint, bypassing the cache
+     */
+    private List<Float> requestEmbedding(String model, String text) {
         try {
             String url = ollamaBaseUrl + "/api/embeddings";
 
             // Create request body
             Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", embeddingModel);
+            requestBody.put("model", model);
             requestBody.put("prompt", text);
 
             // Set headers
@@ -77,97 +463,776 @@ public class EmbeddingServiceImpl implements EmbeddingService {
         }
     }
 
+    @Override
+    public List<List<Float>> generateEmbeddings(List<String> texts) {
+        return generateEmbeddings(embeddingModel, texts);
+    }
+
+    /**
+     * Generate embeddings for several texts with a specific model
+     */
+    private List<List<Float>> generateEmbeddings(String model, List<String> texts) {
+        if (texts == null || texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Serve what we can from the cache; only distinct uncached texts are sent to Ollama
+        List<List<Float>> embeddings = new ArrayList<>(Collections.nCopies(texts.size(), Collections.<Float>emptyList()));
+        Map<Long, List<Integer>> positionsByKey = new LinkedHashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null) {
+                continue;
+            }
+            long key = EmbeddingCache.key(model, text);
+            float[] cached = embeddingCache != null ? embeddingCache.get(key) : null;
+            if (cached != null) {
+                embeddings.set(i, VectorMath.toList(cached));
+                continue;
+            }
+            List<Integer> positions = positionsByKey.get(key);
+            if (positions == null) {
+                positions = new ArrayList<>();
+                positionsByKey.put(key, positions);
+                missing.add(text);
+            }
+            positions.add(i);
+        }
+        if (missing.isEmpty()) {
+            return embeddings;
+        }
+
+        // Split into batches and send them concurrently, preserving input order
+        int size = Math.max(1, batchSize);
+        List<CompletableFuture<List<List<Float>>>> futures = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += size) {
+            List<String> batch = missing.subList(start, Math.min(start + size, missing.size()));
+            if (batchExecutor != null) {
+                futures.add(CompletableFuture.supplyAsync(() -> requestEmbeddingBatch(model, batch), batchExecutor));
+            } else {
+                futures.add(CompletableFuture.completedFuture(requestEmbeddingBatch(model, batch)));
+            }
+        }
+
+        List<List<Float>> generated = new ArrayList<>(missing.size());
+        for (CompletableFuture<List<List<Float>>> future : futures) {
+            generated.addAll(future.join());
+        }
+
+        int index = 0;
+        for (Map.Entry<Long, List<Integer>> entry : positionsByKey.entrySet()) {
+            List<Float> embedding = generated.get(index++);
+            if (!embedding.isEmpty() && embeddingCache != null) {
+                embeddingCache.put(entry.getKey(), VectorMath.toArray(embedding));
+            }
+            for (int position : entry.getValue()) {
+                embeddings.set(position, embedding);
+            }
+        }
+        return embeddings;
+    }
+
+    /**
+     * Embed one batch with Ollama's multi-input /api/embed endpoint.
+     * Falls back to one /api/embeddings request per text if the batch request fails,
+     * for example on Ollama versions without /api/embed.
+     */
+    private List<List<Float>> requestEmbeddingBatch(String model, List<String> batch) {
+        try {
+            String url = ollamaBaseUrl + "/api/embed";
+
+            Map<String, Object> requestBody = new HashMap<>();
+            requestBody.put("model", model);
+            requestBody.put("input", batch);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(requestBody, headers);
+
+            ResponseEntity<Map> responseEntity = restTemplate.postForEntity(url, requestEntity, Map.class);
+
+            Map<String, Object> responseBody = responseEntity.getBody();
+            if (responseBody != null && responseBody.get("embeddings") instanceof List) {
+                List<List<Number>> rawEmbeddings = (List<List<Number>>) responseBody.get("embeddings");
+                if (rawEmbeddings.size() == batch.size()) {
+                    List<List<Float>> embeddings = new ArrayList<>(rawEmbeddings.size());
+                    for (List<Number> rawEmbedding : rawEmbeddings) {
+                        embeddings.add(rawEmbedding.stream()
+                                .map(Number::floatValue)
+                                .collect(Collectors.toList()));
+                    }
+                    return embeddings;
+                }
+            }
+            log.warn("Unexpected batch response format from Ollama API, falling back to single requests");
+        } catch (Exception e) {
+            log.warn("Batch embedding request failed, falling back to single requests: {}", e.getMessage());
+        }
+
+        List<List<Float>> embeddings = new ArrayList<>(batch.size());
+        for (String text : batch) {
+            embeddings.add(requestEmbedding(model, text));
+        }
+        return embeddings;
+    }
+
     @Override
     public float calculateSimilarity(List<Float> embedding1, List<Float> embedding2) {
         if (embedding1 == null || embedding2 == null || 
             embedding1.isEmpty() || embedding2.isEmpty() || 
             embedding1.size() != embedding2.size()) {
+            if (embedding1 != null && embedding2 != null && !embedding1.isEmpty() && !embedding2.isEmpty()) {
+                log.warn("Cannot compare embeddings of dimension {} and {}; they come from different models",
+                        embedding1.size(), embedding2.size());
+            }
             return 0.0f;
         }
 
-        // Calculate dot product
-        float dotProduct = 0.0f;
-        float norm1 = 0.0f;
-        float norm2 = 0.0f;
+        return VectorMath.cosine(VectorMath.toArray(embedding1), VectorMath.toArray(embedding2));
+    }
+
+    @Override
+    public void storeDocumentEmbedding(String documentId, String content) {
+        storeDocumentEmbeddings(Collections.singletonMap(documentId, content));
+    }
+
+    @Override
+    public void storeDocumentEmbeddings(Map<String, String> contentsById) {
+        List<DocumentChunk> passages = new ArrayList<>();
+        for (Map.Entry<String, String> entry : contentsById.entrySet()) {
+            String documentId = entry.getKey();
+            String content = entry.getValue();
+            if (content == null || content.trim().isEmpty()) {
+                log.warn("Cannot generate embedding for empty content: {}", documentId);
+                continue;
+            }
+
+            // The whole content is one section starting on the first page
+            passages.addAll(addDocumentSection(documentId, DocumentContext.builder()
+                    .filename(documentId)
+                    .content(content)
+                    .pageNumber(1)
+                    .build()));
+            completeDocumentSections(documentId);
+        }
+        storePassageEmbeddings(passages);
+    }
+
+    @Override
+    public List<DocumentChunk> addDocumentSection(String documentId, DocumentContext section) {
+        Integer pageNumber = section.getPageNumber();
+        boolean first = pageNumber == null || pageNumber <= 1;
+        List<DocumentChunk> chunks = new ArrayList<>();
+        // Passage metadata is rebuilt from the content; the id list is replaced rather than
+        // modified so that readers never see it change
+        chunkIdsByDocument.compute(documentId, (id, previous) -> {
+            List<String> chunkIds = first || previous == null ? new ArrayList<>() : new ArrayList<>(previous);
+            chunks.addAll(chunker.chunk(documentId, section.getContent(), first ? 1 : pageNumber, chunkIds.size()));
+            for (DocumentChunk chunk : chunks) {
+                String chunkId = chunkId(documentId, chunk.getChunkIndex());
+                chunkIds.add(chunkId);
+                chunksById.put(chunkId, chunk);
+            }
+            return chunkIds;
+        });
+        return chunks;
+    }
 
-        for (int i = 0; i < embedding1.size(); i++) {
-            float val1 = embedding1.get(i);
-            float val2 = embedding2.get(i);
-            
-            dotProduct += val1 * val2;
-            norm1 += val1 * val1;
-            norm2 += val2 * val2;
+    @Override
+    public void completeDocumentSections(String documentId) {
+        List<String> chunkIds = chunkIdsByDocument.get(documentId);
+        int count = chunkIds != null ? chunkIds.size() : 0;
+        VectorStore store = generation.getStore();
+        for (int i = count; ; i++) {
+            // Passages of the previous extraction, or persisted by a previous run, that the document no longer has
+            String chunkId = chunkId(documentId, i);
+            boolean recorded = chunksById.remove(chunkId) != null;
+            if (!recorded && !store.contains(chunkId)) {
+                break;
+            }
+            removeEmbedding(chunkId);
         }
+        // Whole-document embedding persisted before passages were introduced
+        removeEmbedding(documentId);
+    }
 
-        // Calculate cosine similarity
-        if (norm1 <= 0.0f || norm2 <= 0.0f) {
-            return 0.0f;
+    @Override
+    public void storePassageEmbeddings(List<DocumentChunk> passages) {
+        List<String> chunkIds = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        for (DocumentChunk passage : passages) {
+            String chunkId = chunkId(passage.getDocumentId(), passage.getChunkIndex());
+            if (chunksById.get(chunkId) != passage) {
+                // Superseded by a newer extraction of the document, or removed with it
+                continue;
+            }
+            chunkIds.add(chunkId);
+            texts.add(passage.getContent());
+            hashes.add(ContentHash.hash(passage.getContent()));
+        }
+
+        // While a new model's generation is being built, keep both generations current.
+        // The next generation is read first: a swap in between then at worst stores it twice.
+        IndexGeneration next = nextGeneration;
+        IndexGeneration serving = generation;
+        storePassages(serving, chunkIds, texts, hashes);
+        if (next != null && next != serving) {
+            storePassages(next, chunkIds, texts, hashes);
+        }
+    }
+
+    /**
+     * Embed the passages whose text changed with a generation's model and store them in it
+     *
+     * @return The number of embeddings stored
+     */
+    private int storePassages(IndexGeneration target, List<String> chunkIds, List<String> texts, List<Long> hashes) {
+        List<String> staleIds = new ArrayList<>();
+        List<String> staleTexts = new ArrayList<>();
+        List<Long> staleHashes = new ArrayList<>();
+        for (int i = 0; i < chunkIds.size(); i++) {
+            if (!target.isUpToDate(chunkIds.get(i), hashes.get(i))) {
+                staleIds.add(chunkIds.get(i));
+                staleTexts.add(texts.get(i));
+                staleHashes.add(hashes.get(i));
+            }
         }
 
-        return dotProduct / (float) (Math.sqrt(norm1) * Math.sqrt(norm2));
+        if (staleIds.isEmpty()) {
+            log.debug("Embeddings for {} passages are up to date in {}", chunkIds.size(), target);
+            return 0;
+        }
+
+        log.info("Generating embeddings for {} passages with {} in batches of {}",
+                staleIds.size(), target.getModel(), batchSize);
+        List<List<Float>> embeddings = generateEmbeddings(target.getModel(), staleTexts);
+        int stored = 0;
+        for (int i = 0; i < staleIds.size(); i++) {
+            List<Float> embedding = i < embeddings.size() ? embeddings.get(i) : Collections.emptyList();
+            if (embedding.isEmpty()) {
+                log.warn("Failed to generate embedding for passage: {}", staleIds.get(i));
+                continue;
+            }
+            if (putEmbedding(target, staleIds.get(i), embedding, staleHashes.get(i))) {
+                stored++;
+            }
+        }
+        log.info("Stored {} passage embeddings in {}", stored, target);
+        return stored;
     }
 
     @Override
-    public void storeDocumentEmbedding(String documentId, String content) {
-        if (content == null || content.trim().isEmpty()) {
-            log.warn("Cannot generate embedding for empty content: {}", documentId);
-            return;
+    public boolean hasDocumentEmbedding(String documentId) {
+        List<String> chunkIds = chunkIdsByDocument.get(documentId);
+        if (chunkIds == null || chunkIds.isEmpty()) {
+            return false;
         }
+        VectorStore store = generation.getStore();
+        for (String chunkId : chunkIds) {
+            if (!store.contains(chunkId)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        // Generate embedding for document content
-        List<Float> embedding = generateEmbedding(content);
-        
-        if (embedding.isEmpty()) {
-            log.warn("Failed to generate embedding for document: {}", documentId);
-            return;
+    @Override
+    public void removeDocumentEmbedding(String documentId) {
+        List<String> chunkIds = chunkIdsByDocument.remove(documentId);
+        int known = 0;
+        if (chunkIds != null) {
+            for (String chunkId : chunkIds) {
+                chunksById.remove(chunkId);
+                removeEmbedding(chunkId);
+            }
+            known = chunkIds.size();
         }
+        VectorStore store = generation.getStore();
+        for (int i = known; store.contains(chunkId(documentId, i)); i++) {
+            // Passages persisted by a previous run that were never registered in this one
+            removeEmbedding(chunkId(documentId, i));
+        }
+        removeEmbedding(documentId);
+        log.info("Removed embeddings for document: {}", documentId);
+    }
 
-        // Store embedding
-        documentEmbeddings.put(documentId, embedding);
-        log.info("Stored embedding for document: {}", documentId);
+    @Override
+    public Set<String> getEmbeddedDocuments() {
+        Set<String> documentIds = new HashSet<>(chunkIdsByDocument.keySet());
+        VectorStore store = generation.getStore();
+        for (int slot = 0, limit = store.slotLimit(); slot < limit; slot++) {
+            String id = store.idAt(slot);
+            if (id != null) {
+                documentIds.add(documentIdOf(id));
+            }
+        }
+        return documentIds;
+    }
+
+    /**
+     * Store an embedding in a generation
+     *
+     * @return true if the embedding was stored
+     */
+    private boolean putEmbedding(IndexGeneration target, String id, List<Float> embedding, long contentHash) {
+        try {
+            target.put(id, VectorMath.toArray(embedding), contentHash);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("Failed to store embedding for passage: {}: {}", id, e.getMessage());
+            return false;
+        }
+        if (target == generation) {
+            scheduleFlush();
+        }
+        log.debug("Stored embedding for passage: {}", id);
+        return true;
+    }
+
+    /**
+     * Remove an embedding from every generation
+     */
+    private void removeEmbedding(String id) {
+        IndexGeneration next = nextGeneration;
+        if (generation.remove(id)) {
+            scheduleFlush();
+        }
+        if (next != null) {
+            next.remove(id);
+        }
+    }
+
+    /**
+     * Identifier of a passage in the vector store
+     */
+    private static String chunkId(String documentId, int chunkIndex) {
+        return documentId + "#" + chunkIndex;
+    }
+
+    /**
+     * Document a passage belongs to
+     */
+    private String documentIdOf(String chunkId) {
+        DocumentChunk chunk = chunksById.get(chunkId);
+        if (chunk != null) {
+            return chunk.getDocumentId();
+        }
+        int separator = chunkId.lastIndexOf('#');
+        return separator > 0 ? chunkId.substring(0, separator) : chunkId;
     }
 
     @Override
-    public Map<String, Float> findSimilarDocuments(String query, int maxResults) {
-        if (documentEmbeddings.isEmpty()) {
+    public List<SearchResult> findSimilarDocuments(String query, int maxResults) {
+        // Search one generation throughout, even if a new one is swapped in meanwhile
+        IndexGeneration serving = generation;
+        float[] queryVector = embedQuery(serving, query);
+        if (queryVector == null) {
+            return Collections.emptyList();
+        }
+
+        // A document scores as its best matching passage
+        VectorStore store = serving.getStore();
+        ScoreTable documentScores;
+        if (serving.getIndex() != null || store.precision() == VectorPrecision.INT8) {
+            documentScores = new ScoreTable();
+            int candidates = maxResults * Math.max(1, chunkCandidatesPerResult);
+            for (SearchResult chunk : rankChunks(serving, queryVector, candidates)) {
+                documentScores.max(documentIdOf(chunk.getId()), chunk.getScore());
+            }
+        } else if (useParallelScan(store)) {
+            // Slots are resolved to documents once per partition, after its scan releases the store
+            documentScores = partitionedScan.scan(store, queryVector, () -> new SlotScores(scanPartitionSlots),
+                    SlotScores::add, partial -> toDocumentScores(store, partial), ScoreTable::maxAll);
+        } else {
+            SlotScores scores = new SlotScores(store.slotLimit());
+            store.scan(queryVector, scores::add);
+            documentScores = toDocumentScores(store, scores);
+        }
+        return documentScores.top(Math.max(0, maxResults));
+    }
+
+    /**
+     * Fold passage scores into the best score of each document
+     */
+    private ScoreTable toDocumentScores(VectorStore store, SlotScores scores) {
+        String[] chunkIds = scores.resolveIds(store);
+        ScoreTable documentScores = new ScoreTable();
+        for (int i = 0; i < chunkIds.length; i++) {
+            if (chunkIds[i] != null) {
+                documentScores.max(documentIdOf(chunkIds[i]), scores.score(i));
+            }
+        }
+        return documentScores;
+    }
+
+    /**
+     * Check whether exhaustive scans should be split across the scan pool
+     */
+    private boolean useParallelScan(VectorStore store) {
+        return partitionedScan != null && store.size() >= parallelScanThreshold;
+    }
+
+    @Override
+    public List<DocumentChunk> findSimilarChunks(String query, Collection<String> documentIds, int maxPerDocument) {
+        if (documentIds.isEmpty() || maxPerDocument <= 0) {
+            return Collections.emptyList();
+        }
+        IndexGeneration serving = generation;
+        float[] queryVector = embedQuery(serving, query);
+        if (queryVector == null) {
+            return Collections.emptyList();
+        }
+
+        // The selected documents' passages are scored exactly; they are few next to the whole store
+        VectorStore store = serving.getStore();
+        float[] unitQuery = VectorMath.normalize(queryVector);
+        List<DocumentChunk> passages = new ArrayList<>();
+        for (String documentId : documentIds) {
+            List<String> chunkIds = chunkIdsByDocument.get(documentId);
+            if (chunkIds == null) {
+                continue;
+            }
+            TopKSelector selector = new TopKSelector(maxPerDocument);
+            for (int i = 0; i < chunkIds.size(); i++) {
+                int slot = store.slotOf(chunkIds.get(i));
+                if (slot >= 0) {
+                    selector.offer(i, store.exactScore(slot, unitQuery));
+                }
+            }
+            for (SearchResult result : selector.drainResults(chunkIds::get)) {
+                DocumentChunk chunk = chunksById.get(result.getId());
+                if (chunk != null) {
+                    passages.add(chunk.toBuilder().score(result.getScore()).build());
+                }
+            }
+        }
+        return passages;
+    }
+
+    /**
+     * Find the most similar passages, re-ranking int8 candidates at full precision
+     *
+     * @return Chunk ids and similarity scores, sorted by similarity (descending)
+     */
+    private List<SearchResult> rankChunks(IndexGeneration serving, float[] queryVector, int maxResults) {
+        if (maxResults <= 0) {
+            return Collections.emptyList();
+        }
+        VectorStore store = serving.getStore();
+        boolean rerank = store.precision() == VectorPrecision.INT8;
+        int candidates = rerank ? maxResults * Math.max(1, rerankFactor) : maxResults;
+
+        List<SearchResult> results;
+        if (serving.getIndex() != null) {
+            results = searchIndex(serving, queryVector, candidates);
+        } else if (useParallelScan(store)) {
+            results = partitionedScan.scan(store, queryVector, () -> new TopKSelector(candidates),
+                    TopKSelector::offer, TopKSelector::offerAll).drainResults(store::idAt);
+        } else {
+            TopKSelector selector = new TopKSelector(candidates);
+            store.scan(queryVector, selector::offer);
+            results = selector.drainResults(store::idAt);
+        }
+        if (!rerank) {
+            return results;
+        }
+
+        float[] unitQuery = VectorMath.normalize(queryVector);
+        TopKSelector selector = new TopKSelector(maxResults);
+        for (int i = 0; i < results.size(); i++) {
+            int slot = store.slotOf(results.get(i).getId());
+            if (slot >= 0) {
+                selector.offer(i, store.exactScore(slot, unitQuery));
+            }
+        }
+        List<SearchResult> candidateResults = results;
+        return selector.drainResults(i -> candidateResults.get(i).getId());
+    }
+
+    /**
+     * Generate the embedding of a search query with the model of the generation being searched
+     *
+     * @return The query vector, or null if there is nothing to search or the embedding failed
+     */
+    private float[] embedQuery(IndexGeneration serving, String query) {
+        if (serving.getStore().isEmpty()) {
             log.warn("No document embeddings available for similarity search");
-            return Collections.emptyMap();
+            return null;
+        }
+
+        String cacheKey = null;
+        if (queryEmbeddingCache != null && query != null) {
+            cacheKey = queryCacheKey(serving.getModel(), query);
+            float[] cached = queryEmbeddingCache.getIfPresent(cacheKey);
+            if (cached != null) {
+                log.debug("Query embedding cache hit for query: {}", query);
+                return cached;
+            }
         }
 
         // Generate embedding for query
-        List<Float> queryEmbedding = generateEmbedding(query);
-        
+        List<Float> queryEmbedding = generateEmbedding(serving.getModel(), query);
+
         if (queryEmbedding.isEmpty()) {
             log.warn("Failed to generate embedding for query: {}", query);
-            return Collections.emptyMap();
+            return null;
         }
+        float[] queryVector = VectorMath.toArray(queryEmbedding);
+        if (cacheKey != null) {
+            queryEmbeddingCache.put(cacheKey, queryVector);
+        }
+        return queryVector;
+    }
 
-        // Calculate similarity scores
-        Map<String, Float> similarityScores = new HashMap<>();
-        
-        for (Map.Entry<String, List<Float>> entry : documentEmbeddings.entrySet()) {
-            String documentId = entry.getKey();
-            List<Float> documentEmbedding = entry.getValue();
-            
-            float similarity = calculateSimilarity(queryEmbedding, documentEmbedding);
-            similarityScores.put(documentId, similarity);
+    /**
+     * Key of a query in the query embedding cache. In normalized mode, prompts that differ only in
+     * case, punctuation, stop words or word order share a key, as in the response cache.
+     * Keys are scoped by model so a generation swap never serves a vector from the old model.
+     */
+    private String queryCacheKey(String model, String query) {
+        if (queryCacheNormalizeKeys) {
+            String normalized = responseCacheService.normalizePrompt(query);
+            // Prompts made only of stop words would all normalize to the same empty key
+            if (!normalized.isEmpty()) {
+                return model + "\n" + normalized;
+            }
         }
+        return model + "\n" + query.trim();
+    }
+
+    /**
+     * Log the statistics of the embedding caches, unless they went unused since the last log
+     */
+    private void logCacheStatsIfUsed() {
+        CacheStats queryStats = queryEmbeddingCache != null ? queryEmbeddingCache.stats() : null;
+        CacheStats passageStats = embeddingCache != null ? embeddingCache.stats() : null;
+        long requests = (queryStats != null ? queryStats.requestCount() : 0)
+                + (passageStats != null ? passageStats.requestCount() : 0);
+        if (requests == loggedCacheRequests) {
+            return;
+        }
+        loggedCacheRequests = requests;
+        if (queryStats != null) {
+            logCacheStats("Query embedding cache", queryStats);
+        }
+        if (passageStats != null) {
+            logCacheStats("Embedding cache", passageStats);
+        }
+    }
 
-        // Sort by similarity score (descending) and limit results
-        return similarityScores.entrySet().stream()
-                .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
-                .limit(maxResults)
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (e1, e2) -> e1,
-                        HashMap::new
-                ));
+    private void logCacheStats(String name, CacheStats stats) {
+        log.info("{}: {} hits, {} misses, hit rate {}, {} evictions", name, stats.hitCount(),
+                stats.missCount(), String.format("%.2f", stats.hitRate()), stats.evictionCount());
+    }
+
+    /**
+     * Find the most similar passages using the approximate vector index
+     */
+    private List<SearchResult> searchIndex(IndexGeneration serving, float[] queryVector, int maxResults) {
+        int[] slots = new int[maxResults];
+        float[] scores = new float[maxResults];
+        int found = serving.getIndex().search(queryVector, maxResults, slots, scores);
+
+        List<SearchResult> results = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            String chunkId = serving.getStore().idAt(slots[i]);
+            if (chunkId != null) {
+                results.add(new SearchResult(chunkId, scores[i]));
+            }
+        }
+        return results;
     }
 
     @Override
     public void clearEmbeddings() {
-        documentEmbeddings.clear();
+        generation.clear();
+        IndexGeneration next = nextGeneration;
+        if (next != null) {
+            next.clear();
+        }
+        chunksById.clear();
+        chunkIdsByDocument.clear();
+        scheduleFlush();
         log.info("Cleared all document embeddings");
     }
-}
\ No newline at end of file
+
+    /**
+     * Start building a generation for the configured model alongside the serving one
+     */
+    private void startMigration() {
+        IndexGeneration serving = generation;
+        nextGeneration = createGeneration(embeddingModel);
+        migrationProgressMillis = System.currentTimeMillis();
+        migrationExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MCP-Embedding-Migration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One step per second, each embedding at most passages-per-second passages
+        migrationExecutor.scheduleWithFixedDelay(this::runMigration, 1, 1, TimeUnit.SECONDS);
+        log.info("Embedding model changed from {} to {}: {} keeps serving while {} passages are re-embedded "
+                        + "at up to {} per second", serving.getModel(), embeddingModel, serving,
+                serving.getStore().size(), migrationPassagesPerSecond);
+    }
+
+    /**
+     * Re-embed the next batch of passages into the next generation, and swap it in once every
+     * passage whose text is known has been migrated
+     */
+    private void runMigration() {
+        IndexGeneration next = nextGeneration;
+        IndexGeneration serving = generation;
+        if (next == null || next == serving) {
+            return;
+        }
+        try {
+            int budget = (int) Math.max(1, Math.round(migrationPassagesPerSecond));
+            List<String> chunkIds = new ArrayList<>();
+            List<String> texts = new ArrayList<>();
+            List<Long> hashes = new ArrayList<>();
+            int withoutText = 0;
+            VectorStore store = serving.getStore();
+            for (int slot = 0; slot < store.slotLimit() && chunkIds.size() < budget; slot++) {
+                String chunkId = store.idAt(slot);
+                if (chunkId == null || next.getStore().contains(chunkId)) {
+                    continue;
+                }
+                // Passages loaded from disk have no text until their document is processed again
+                DocumentChunk chunk = chunksById.get(chunkId);
+                if (chunk == null) {
+                    withoutText++;
+                    continue;
+                }
+                chunkIds.add(chunkId);
+                texts.add(chunk.getContent());
+                hashes.add(ContentHash.hash(chunk.getContent()));
+            }
+
+            if (!chunkIds.isEmpty()) {
+                if (storePassages(next, chunkIds, texts, hashes) > 0) {
+                    migrationProgressMillis = System.currentTimeMillis();
+                }
+                return;
+            }
+            long idleSeconds = (System.currentTimeMillis() - migrationProgressMillis) / 1000;
+            if (withoutText > 0 && idleSeconds < migrationContentWaitSeconds) {
+                log.debug("Waiting for the text of {} passages before swapping in {}", withoutText, next);
+                return;
+            }
+            if (withoutText > 0) {
+                log.warn("Swapping in {} without {} passages whose documents were not processed again; "
+                        + "they are embedded when their documents are next processed", next, withoutText);
+            }
+            completeMigration(serving, next);
+        } catch (RuntimeException e) {
+            log.warn("Embedding migration step failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Make the next generation the serving one and release the previous generation
+     */
+    private void completeMigration(IndexGeneration previous, IndexGeneration next) {
+        generation = next;
+        nextGeneration = null;
+        scheduleFlush();
+        log.info("Swapped in {} with {} passages, replacing {}", next, next.getStore().size(), previous);
+
+        // Let searches that started on the previous generation finish before releasing it
+        migrationExecutor.schedule(previous::close, 30, TimeUnit.SECONDS);
+        migrationExecutor.shutdown();
+    }
+
+    /**
+     * Load embeddings persisted by a previous run. Float32 vectors are scored in place from the
+     * mapped file; an approximate index is rebuilt over them in the background.
+     * Files written for a different embedding model keep serving as the current generation
+     * while passages are re-embedded with the configured model in the background.
+     */
+    private void loadPersistedEmbeddings() {
+        Path path = Paths.get(persistencePath);
+        if (!Files.exists(path)) {
+            log.info("No persisted embeddings found at {}", path);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            EmbeddingFile.Contents contents = EmbeddingFile.read(path);
+            boolean modelChanged = !embeddingModel.equals(contents.getModel());
+            if (modelChanged && !migrationEnabled) {
+                log.warn("Ignoring persisted embeddings at {}: generated by model {} but {} is configured",
+                        path, contents.getModel(), embeddingModel);
+                return;
+            }
+
+            IndexGeneration loaded = modelChanged ? createGeneration(contents.getModel()) : generation;
+            if (loaded.getIndex() != null) {
+                indexRebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "MCP-Index-Rebuild");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            loaded.load(contents, command -> indexRebuildExecutor.execute(() -> {
+                long rebuildStart = System.currentTimeMillis();
+                command.run();
+                log.info("Rebuilt {} index over {} persisted embeddings in {} ms",
+                        searchMode, contents.size(), System.currentTimeMillis() - rebuildStart);
+            }));
+            log.info("Loaded {} persisted embeddings ({}, {} served from the mapped file) from {} in {} ms",
+                    contents.size(), loaded, loaded.getStore().mappedSlots(), path,
+                    System.currentTimeMillis() - start);
+
+            if (modelChanged) {
+                generation.close();
+                generation = loaded;
+                startMigration();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable embedding file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Mark the store as changed and write it to disk after the flush delay.
+     * Changes made while a flush is pending are written by that flush.
+     */
+    private void scheduleFlush() {
+        if (flushExecutor == null) {
+            return;
+        }
+        dirty.set(true);
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                flushExecutor.schedule(() -> {
+                    flushScheduled.set(false);
+                    flushEmbeddings();
+                }, flushDelaySeconds, TimeUnit.SECONDS);
+            } catch (RuntimeException e) {
+                // Executor is shutting down; the shutdown hook writes the file
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Write the vector store to the embedding file if it has changed
+     */
+    private synchronized void flushEmbeddings() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        Path path = Paths.get(persistencePath);
+        try {
+            IndexGeneration serving = generation;
+            VectorStore.Snapshot snapshot = serving.getStore().snapshot();
+            EmbeddingFile.write(path, serving.getModel(), snapshot, serving.getContentHashes());
+            log.info("Persisted {} embeddings to {}", snapshot.size(), path);
+        } catch (IOException e) {
+            dirty.set(true);
+            log.error("Error persisting embeddings to {}", path, e);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.lnmcp.lena.service.impl;
 
 import com.lnmcp.lena.model.DatabaseContext;
+import com.lnmcp.lena.model.DocumentChunk;
 import com.lnmcp.lena.model.DocumentContext;
 import com.lnmcp.lena.model.McpContext;
 import com.lnmcp.lena.model.PromptRequest;
@@ -17,7 +18,11 @@ import org.springframework.stereotype.Service;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -76,6 +81,8 @@ public class McpServiceImpl implements McpService {
             List<DocumentContext> documentContexts = documentService.extractContextFromMultipleDocumentsByFilename(
                     promptRequest.getDocumentReferences());
             documentContexts.forEach(mcpContext::addDocumentContext);
+            mcpContext.setRelevantPassages(documentService.findRelevantPassages(
+                    promptRequest.getPrompt(), promptRequest.getDocumentReferences()));
         } 
         // If database references are explicitly specified, use them
         if (promptRequest.getDatabaseReferences() != null && !promptRequest.getDatabaseReferences().isEmpty()) {
@@ -103,6 +110,7 @@ public class McpServiceImpl implements McpService {
                     log.info("Found {} relevant documents for prompt: {}", relevantDocuments.size(), promptRequest.getPrompt());
                     List<DocumentContext> documentContexts = documentService.extractContextFromMultipleDocumentsByFilename(relevantDocuments);
                     documentContexts.forEach(mcpContext::addDocumentContext);
+                    mcpContext.setRelevantPassages(documentService.findRelevantPassages(promptRequest.getPrompt(), relevantDocuments));
                 }
 
                 // Extract context from relevant tables
@@ -153,14 +161,36 @@ public class McpServiceImpl implements McpService {
         // Generate response using AI service
         McpContext updatedContext = aiService.generateResponse(mcpContext);
 
-        // Create document sources
+        // Create document sources, citing the pages of the passages that were used
         List<PromptResponse.DocumentSource> documentSources = new ArrayList<>();
         if (updatedContext.getDocumentContexts() != null && !updatedContext.getDocumentContexts().isEmpty()) {
+            Map<String, TreeSet<Integer>> passagePages = new HashMap<>();
+            if (updatedContext.getRelevantPassages() != null) {
+                for (DocumentChunk passage : updatedContext.getRelevantPassages()) {
+                    if (passage.getPageNumber() != null) {
+                        passagePages.computeIfAbsent(passage.getDocumentId(), k -> new TreeSet<>())
+                                .add(passage.getPageNumber());
+                    }
+                }
+            }
+            // One source per document; without passages, cite the pages its sections start on
+            Map<String, PromptResponse.DocumentSource> sourcesByDocument = new LinkedHashMap<>();
+            Map<String, TreeSet<Integer>> sectionPages = new HashMap<>();
             for (DocumentContext doc : updatedContext.getDocumentContexts()) {
-                PromptResponse.DocumentSource source = new PromptResponse.DocumentSource();
-                source.setFilename(doc.getFilename());
-                source.setType(doc.getDocumentType());
-                source.setPageNumbers(List.of(doc.getPageNumber()));
+                sourcesByDocument.computeIfAbsent(doc.getFilename(), filename -> {
+                    PromptResponse.DocumentSource source = new PromptResponse.DocumentSource();
+                    source.setFilename(filename);
+                    source.setType(doc.getDocumentType());
+                    return source;
+                });
+                if (doc.getPageNumber() != null) {
+                    sectionPages.computeIfAbsent(doc.getFilename(), k -> new TreeSet<>()).add(doc.getPageNumber());
+                }
+            }
+            for (PromptResponse.DocumentSource source : sourcesByDocument.values()) {
+                TreeSet<Integer> pages = passagePages.getOrDefault(source.getFilename(),
+                        sectionPages.get(source.getFilename()));
+                source.setPageNumbers(pages != null ? new ArrayList<>(pages) : new ArrayList<>());
                 documentSources.add(source);
             }
         }
@@ -0,0 +1,246 @@
+package com.lnmcp.lena.text;
+
+import com.lnmcp.lena.model.DocumentContext;
+import com.lnmcp.lena.util.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of extracted document text, so a restart does not parse unchanged files again.
+ * Each document has one gzip-compressed entry named after the hash of its absolute path,
+ * holding the sections the document was extracted in:
+ * <pre>
+ * int magic "LNXC", int version, UTF path, long size, long mtime, long contentHash, int sectionCount,
+ * per section: UTF filename, UTF documentType, int pageNumber, int pageCount, int length, byte[length] content (UTF-8)
+ * </pre>
+ * Entries are validated lazily on lookup. A matching size and modification time is trusted
+ * as is; when only the modification time differs, the file is hashed and the entry is reused
+ * if the content is unchanged. The state of a file is taken before it is parsed and stored
+ * with its extraction, so a file rewritten during the parse fails the next lookup instead of
+ * validating the old text.
+ */
+@Slf4j
+public class ExtractionCache {
+
+    private static final int MAGIC = 0x4C4E5843; // "LNXC"
+
+    private static final int VERSION = 3;
+
+    private static final int HASH_BLOCK_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    /**
+     * @param directory Directory holding the cache entries
+     */
+    public ExtractionCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the cached extraction of a file if the file has not changed since it was cached
+     *
+     * @param file The document file
+     * @return The cached sections in page order, or null if there is no valid entry
+     */
+    public List<DocumentContext> get(Path file) {
+        Path entry = entryPath(file);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        String key = key(file);
+        long size;
+        long currentModified;
+        long contentHash;
+        boolean touched;
+        List<DocumentContext> sections;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(entry))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+                return null;
+            }
+            size = in.readLong();
+            long modified = in.readLong();
+            contentHash = in.readLong();
+
+            if (Files.size(file) != size) {
+                return null;
+            }
+            currentModified = Files.getLastModifiedTime(file).toMillis();
+            touched = currentModified != modified;
+            if (touched && fileHash(file) != contentHash) {
+                return null;
+            }
+
+            int sectionCount = in.readInt();
+            sections = new ArrayList<>(sectionCount);
+            for (int i = 0; i < sectionCount; i++) {
+                sections.add(readContext(in));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable extraction cache entry {}: {}", entry, e.getMessage());
+            return null;
+        }
+
+        if (touched) {
+            // Same content with a new timestamp; record it so the next lookup skips hashing.
+            // The entry is replaced only after it was closed, which Windows requires for the move.
+            try {
+                write(entry, key, size, currentModified, contentHash, sections);
+            } catch (IOException e) {
+                log.warn("Error rewriting extraction cache entry {}: {}", entry, e.getMessage());
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * Read the size, modification time and content hash of a file, to be taken before it is parsed
+     *
+     * @param file The document file
+     * @return The state to cache its extraction under
+     * @throws IOException If the file cannot be read
+     */
+    public FileState state(Path file) throws IOException {
+        // Size and time first: a write during hashing leaves a newer time than the one stored
+        long size = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        return new FileState(size, modified, fileHash(file));
+    }
+
+    /**
+     * Cache the extraction of a file
+     *
+     * @param file The document file
+     * @param state The state of the file taken before it was parsed
+     * @param sections The sections of text extracted from it, in page order
+     */
+    public void put(Path file, FileState state, List<DocumentContext> sections) {
+        Path entry = entryPath(file);
+        try {
+            write(entry, key(file), state.size, state.modified, state.contentHash, sections);
+        } catch (IOException e) {
+            log.warn("Error writing extraction cache entry {}: {}", entry, e.getMessage());
+        }
+    }
+
+    /**
+     * Remove the cached extraction of a file
+     */
+    public void remove(Path file) {
+        try {
+            Files.deleteIfExists(entryPath(file));
+        } catch (IOException e) {
+            log.warn("Error removing extraction cache entry for {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Size, modification time and content hash of a file at one point in time
+     */
+    public static final class FileState {
+
+        private final long size;
+
+        private final long modified;
+
+        private final long contentHash;
+
+        private FileState(long size, long modified, long contentHash) {
+            this.size = size;
+            this.modified = modified;
+            this.contentHash = contentHash;
+        }
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    private Path entryPath(Path file) {
+        return directory.resolve(String.format("%016x.bin", ContentHash.hash(key(file))));
+    }
+
+    private void write(Path entry, String key, long size, long modified, long contentHash,
+                       List<DocumentContext> sections) throws IOException {
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "extraction", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(temp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(key);
+                out.writeLong(size);
+                out.writeLong(modified);
+                out.writeLong(contentHash);
+                out.writeInt(sections.size());
+                for (DocumentContext section : sections) {
+                    writeContext(out, section);
+                }
+            }
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeContext(DataOutputStream out, DocumentContext context) throws IOException {
+        out.writeUTF(context.getFilename() != null ? context.getFilename() : "");
+        DocumentContext.DocumentType type = context.getDocumentType() != null
+                ? context.getDocumentType() : DocumentContext.DocumentType.UNKNOWN;
+        out.writeUTF(type.name());
+        out.writeInt(context.getPageNumber() != null ? context.getPageNumber() : -1);
+        out.writeInt(context.getPageCount() != null ? context.getPageCount() : -1);
+        // writeUTF is limited to 64 KiB, so content is written as length-prefixed bytes
+        byte[] content = (context.getContent() != null ? context.getContent() : "").getBytes(StandardCharsets.UTF_8);
+        out.writeInt(content.length);
+        out.write(content);
+    }
+
+    private static DocumentContext readContext(DataInputStream in) throws IOException {
+        String filename = in.readUTF();
+        DocumentContext.DocumentType type = DocumentContext.DocumentType.valueOf(in.readUTF());
+        int pageNumber = in.readInt();
+        int pageCount = in.readInt();
+        byte[] content = new byte[in.readInt()];
+        in.readFully(content);
+        return DocumentContext.builder()
+                .filename(filename)
+                .documentType(type)
+                .pageNumber(pageNumber >= 0 ? pageNumber : null)
+                .pageCount(pageCount >= 0 ? pageCount : null)
+                .content(new String(content, StandardCharsets.UTF_8))
+                .build();
+    }
+
+    /**
+     * XXH64 of a file, hashed a block at a time with each block seeded by the previous hash
+     * so that large files are never read into memory whole
+     */
+    private static long fileHash(Path file) throws IOException {
+        byte[] buffer = new byte[HASH_BLOCK_SIZE];
+        long hash = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int length;
+            while ((length = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                hash = ContentHash.xxHash64(buffer, 0, length, hash);
+            }
+        }
+        return hash;
+    }
+}
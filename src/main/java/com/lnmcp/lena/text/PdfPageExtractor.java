@@ -0,0 +1,70 @@
+package com.lnmcp.lena.text;
+
+import com.lnmcp.lena.model.DocumentContext;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the text of a PDF a section of pages at a time.
+ * Each section is stripped with {@link PDFTextStripper#setStartPage}/{@link PDFTextStripper#setEndPage}
+ * and handed to a consumer as its own context, numbered with the page it starts on, so the
+ * stripper never holds more than one section of text. Every page ends with a form feed, so
+ * concatenated sections read like the text of the whole document. PDFBox does not check for
+ * interrupts itself, so the stripper stops with an {@link InterruptedIOException} before each
+ * page once the extracting thread has been interrupted, e.g. when its task timed out.
+ */
+public class PdfPageExtractor {
+
+    private final int pagesPerSection;
+
+    /**
+     * @param pagesPerSection Pages stripped per call and emitted as one context
+     */
+    public PdfPageExtractor(int pagesPerSection) {
+        this.pagesPerSection = Math.max(1, pagesPerSection);
+    }
+
+    /**
+     * Stream the text of a document section by section
+     *
+     * @param document The loaded PDF
+     * @param filename The source document filename
+     * @param sectionConsumer Receives each section in page order
+     * @return The number of pages in the document
+     * @throws IOException If a page cannot be read
+     */
+    public int extract(PDDocument document, String filename, Consumer<DocumentContext> sectionConsumer)
+            throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper() {
+            @Override
+            protected void startPage(PDPage page) throws IOException {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Interrupted while extracting " + filename);
+                }
+                super.startPage(page);
+            }
+        };
+        // Mark page breaks so that passages can be traced back to their page
+        stripper.setPageEnd("\f");
+
+        int pageCount = document.getNumberOfPages();
+        for (int first = 1; first <= pageCount; first += pagesPerSection) {
+            int last = Math.min(pageCount, first + pagesPerSection - 1);
+            stripper.setStartPage(first);
+            stripper.setEndPage(last);
+            sectionConsumer.accept(DocumentContext.builder()
+                    .filename(filename)
+                    .documentType(DocumentContext.DocumentType.PDF)
+                    .content(stripper.getText(document))
+                    .pageNumber(first)
+                    .pageCount(pageCount)
+                    .build());
+        }
+        return pageCount;
+    }
+}
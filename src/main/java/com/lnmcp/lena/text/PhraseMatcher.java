@@ -0,0 +1,163 @@
+package com.lnmcp.lena.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton that counts occurrences of many phrases in one pass over a text.
+ * The phrases are compiled into a trie whose nodes carry failure links to the longest proper
+ * suffix that is also a trie path, so scanning never backs up in the text and costs
+ * O(text length + matches) however many phrases there are. Matching ignores case: phrases are
+ * lowercased when compiled and text characters as they are read, so callers need not lowercase
+ * whole documents first. Overlapping occurrences are all counted.
+ * <p>
+ * Immutable and thread-safe once built; build one per query and reuse it for every text.
+ */
+public final class PhraseMatcher {
+
+    private final int patternCount;
+
+    // Outgoing edges of each node, sorted by character for binary search
+    private final char[][] edgeChars;
+
+    private final int[][] edgeTargets;
+
+    private final int[] failure;
+
+    // Patterns ending at each node, including those ending at nodes on its failure chain
+    private final int[][] outputs;
+
+    /**
+     * @param patterns The phrases to match; empty phrases never match
+     */
+    public PhraseMatcher(List<String> patterns) {
+        this.patternCount = patterns.size();
+
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> ownOutputs = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ownOutputs.add(new ArrayList<>());
+        for (int p = 0; p < patterns.size(); p++) {
+            String pattern = patterns.get(p).toLowerCase();
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                Integer next = trie.get(node).get(pattern.charAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(node).put(pattern.charAt(i), next);
+                    trie.add(new TreeMap<>());
+                    ownOutputs.add(new ArrayList<>());
+                }
+                node = next;
+            }
+            ownOutputs.get(node).add(p);
+        }
+
+        int nodeCount = trie.size();
+        edgeChars = new char[nodeCount][];
+        edgeTargets = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            TreeMap<Character, Integer> edges = trie.get(node);
+            edgeChars[node] = new char[edges.size()];
+            edgeTargets[node] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[node][i] = edge.getKey();
+                edgeTargets[node][i] = edge.getValue();
+                i++;
+            }
+        }
+
+        // Breadth-first, so a node's failure target is finished before the node itself
+        failure = new int[nodeCount];
+        outputs = new int[nodeCount][];
+        outputs[0] = toArray(ownOutputs.get(0));
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[0]) {
+            failure[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int[] own = toArray(ownOutputs.get(node));
+            int[] inherited = outputs[failure[node]];
+            outputs[node] = inherited.length == 0 ? own : concat(own, inherited);
+            for (int i = 0; i < edgeChars[node].length; i++) {
+                int child = edgeTargets[node][i];
+                failure[child] = step(failure[node], edgeChars[node][i]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Number of patterns the matcher was built with
+     */
+    public int patternCount() {
+        return patternCount;
+    }
+
+    /**
+     * Count the occurrences of every pattern in a text
+     *
+     * @return Occurrence count per pattern, indexed like the constructor's list
+     */
+    public int[] count(CharSequence text) {
+        int[] counts = new int[patternCount];
+        count(text, counts);
+        return counts;
+    }
+
+    /**
+     * Add the occurrences of every pattern in a text to existing counts
+     *
+     * @param counts Counts indexed like the constructor's list, at least {@link #patternCount()} long
+     */
+    public void count(CharSequence text, int[] counts) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, Character.toLowerCase(text.charAt(i)));
+            for (int pattern : outputs[state]) {
+                counts[pattern]++;
+            }
+        }
+    }
+
+    /**
+     * Follow the edge for a character, falling back along failure links
+     */
+    private int step(int state, char c) {
+        while (true) {
+            int index = Arrays.binarySearch(edgeChars[state], c);
+            if (index >= 0) {
+                return edgeTargets[state][index];
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = failure[state];
+        }
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] array = new int[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+}
@@ -0,0 +1,164 @@
+package com.lnmcp.lena.text;
+
+import com.lnmcp.lena.model.DocumentChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits document content into overlapping passages of bounded size.
+ * A passage ends at the last paragraph break, sentence end or whitespace that falls in the
+ * second half of the size window, in that order of preference. Page breaks are form feed
+ * characters; the page number of a passage is the page on which it starts.
+ */
+public class TextChunker {
+
+    private static final char PAGE_BREAK = '\f';
+
+    private final int chunkSize;
+
+    private final int overlap;
+
+    /**
+     * @param chunkSize Maximum passage length in characters
+     * @param overlap Characters repeated at the start of the next passage
+     */
+    public TextChunker(int chunkSize, int overlap) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = Math.max(0, Math.min(overlap, chunkSize / 2));
+    }
+
+    /**
+     * Split a document into passages
+     *
+     * @param documentId The document the passages belong to
+     * @param content The document content
+     * @return The non-blank passages in document order
+     */
+    public List<DocumentChunk> chunk(String documentId, String content) {
+        return chunk(documentId, content, 1, 0);
+    }
+
+    /**
+     * Split a section of a document into passages, numbering them after the passages of the
+     * sections before it. Offsets are relative to the section.
+     *
+     * @param documentId The document the passages belong to
+     * @param content The section content
+     * @param firstPage The page the section starts on
+     * @param firstIndex The index of the section's first passage within the document
+     * @return The non-blank passages in section order
+     */
+    public List<DocumentChunk> chunk(String documentId, String content, int firstPage, int firstIndex) {
+        List<DocumentChunk> chunks = new ArrayList<>();
+        if (content == null || content.isEmpty()) {
+            return chunks;
+        }
+
+        int length = content.length();
+        int start = 0;
+        int page = firstPage;
+        int pageCountedTo = 0;
+        while (start < length) {
+            int end = Math.min(start + chunkSize, length);
+            if (end < length) {
+                end = findBoundary(content, start, end);
+            }
+
+            for (; pageCountedTo < start; pageCountedTo++) {
+                if (content.charAt(pageCountedTo) == PAGE_BREAK) {
+                    page++;
+                }
+            }
+
+            String text = content.substring(start, end).trim();
+            if (!text.isEmpty()) {
+                chunks.add(DocumentChunk.builder()
+                        .documentId(documentId)
+                        .chunkIndex(firstIndex + chunks.size())
+                        .pageNumber(page)
+                        .startOffset(start)
+                        .endOffset(end)
+                        .content(text)
+                        .build());
+            }
+
+            if (end >= length) {
+                break;
+            }
+            start = nextStart(content, start, end);
+        }
+        return chunks;
+    }
+
+    /**
+     * Page of a position in document content, counting the page breaks before it
+     *
+     * @param content The document content
+     * @param offset A position in the content
+     * @return The 1-based page number
+     */
+    public static int pageAt(String content, int offset) {
+        int page = 1;
+        int limit = Math.min(offset, content.length());
+        for (int i = 0; i < limit; i++) {
+            if (content.charAt(i) == PAGE_BREAK) {
+                page++;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Find where a passage should end within [start, end)
+     */
+    private int findBoundary(String content, int start, int end) {
+        int min = start + (end - start) / 2;
+
+        // Paragraph or page break
+        for (int i = end - 1; i > min; i--) {
+            char c = content.charAt(i);
+            if (c == PAGE_BREAK || (c == '\n' && content.charAt(i - 1) == '\n')) {
+                return i + 1;
+            }
+        }
+        // Sentence end followed by whitespace, or a line break
+        for (int i = end - 1; i > min; i--) {
+            char c = content.charAt(i);
+            if (c == '\n') {
+                return i + 1;
+            }
+            if (Character.isWhitespace(c)) {
+                char previous = content.charAt(i - 1);
+                if (previous == '.' || previous == '?' || previous == '!' || previous == '。') {
+                    return i + 1;
+                }
+            }
+        }
+        // Any whitespace
+        for (int i = end - 1; i > min; i--) {
+            if (Character.isWhitespace(content.charAt(i))) {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Start of the next passage: {@code overlap} characters before the end of the previous
+     * one, moved forward to the beginning of a word
+     */
+    private int nextStart(String content, int start, int end) {
+        int next = end - overlap;
+        if (next <= start) {
+            return end;
+        }
+        while (next < end && !Character.isWhitespace(content.charAt(next - 1))) {
+            next++;
+        }
+        return next;
+    }
+}
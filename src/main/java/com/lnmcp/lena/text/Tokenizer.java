@@ -0,0 +1,151 @@
+package com.lnmcp.lena.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Tokenizer shared by keyword indexing and every keyword-based retrieval path.
+ * Text is split in one pass into runs of Latin letters and digits and runs of Hangul
+ * syllables, lowercased as it is read. A Latin run is one token. A Hangul run (eojeol) is
+ * emitted as is, then without a trailing particle or ending such as 은/는/을/를/에서, then as
+ * the character bigrams of that stem. The stem and bigrams let "입주자를" match "입주자" and
+ * "입주자모집공고", which whole-eojeol tokens never would.
+ */
+public final class Tokenizer {
+
+    /**
+     * Common English words that carry no meaning as keywords
+     */
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "a", "an", "and", "or", "but", "is", "are", "was", "were",
+            "in", "on", "at", "to", "for", "with", "by", "about", "like",
+            "through", "over", "before", "after", "between", "under", "during",
+            "of", "from", "up", "down", "into", "out", "as", "if", "when",
+            "why", "how", "all", "any", "both", "each", "few", "more", "most",
+            "other", "some", "such", "no", "nor", "not", "only", "own", "same",
+            "so", "than", "too", "very", "can", "will", "just", "should", "now"
+    ));
+
+    /**
+     * Particles and endings stripped from the end of an eojeol, longest first so that e.g.
+     * 에서 is removed whole rather than as 서
+     */
+    private static final String[] SUFFIXES = {
+            "에서부터", "으로부터",
+            "에게서", "에서는", "에서도", "으로는", "으로도", "에게는", "까지는", "부터는", "이라는", "이라고",
+            "입니다", "습니다",
+            "에서", "에게", "께서", "으로", "부터", "까지", "처럼", "보다", "이나", "라고", "하고", "이다",
+            "에는", "에도", "와는", "과는", "이며", "하는", "했다", "한다",
+            "은", "는", "이", "가", "을", "를", "의", "에", "로", "와", "과", "도", "만", "요"
+    };
+
+    private static final int NONE = 0;
+
+    private static final int LATIN = 1;
+
+    private static final int HANGUL = 2;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Emit the index tokens of a text
+     *
+     * @param text The text to tokenize
+     * @param sink Receives each token in text order; tokens may repeat
+     */
+    public static void tokenize(CharSequence text, Consumer<String> sink) {
+        StringBuilder run = new StringBuilder();
+        int runType = NONE;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int type = typeOf(c);
+            if (type != runType) {
+                emit(run, runType, sink);
+                run.setLength(0);
+                runType = type;
+            }
+            if (type != NONE) {
+                run.append(c);
+            }
+        }
+        emit(run, runType, sink);
+    }
+
+    /**
+     * Get the index tokens of a text
+     */
+    public static List<String> tokenize(CharSequence text) {
+        List<String> tokens = new ArrayList<>();
+        tokenize(text, tokens::add);
+        return tokens;
+    }
+
+    /**
+     * Extract the distinct keywords of a prompt: its tokens without stop words and without
+     * Latin words of two letters or fewer or single Hangul syllables
+     */
+    public static List<String> keywords(String prompt) {
+        if (prompt == null || prompt.trim().isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> keywords = new LinkedHashSet<>();
+        tokenize(prompt, token -> {
+            boolean hangul = typeOf(token.charAt(0)) == HANGUL;
+            if (hangul ? token.length() >= 2 : token.length() > 2 && !STOP_WORDS.contains(token)) {
+                keywords.add(token);
+            }
+        });
+        return new ArrayList<>(keywords);
+    }
+
+    /**
+     * Remove a trailing particle or ending from a Hangul eojeol, keeping a stem of at least
+     * two syllables
+     */
+    static String stripSuffix(String eojeol) {
+        for (String suffix : SUFFIXES) {
+            if (eojeol.length() - suffix.length() >= 2 && eojeol.endsWith(suffix)) {
+                return eojeol.substring(0, eojeol.length() - suffix.length());
+            }
+        }
+        return eojeol;
+    }
+
+    private static int typeOf(char c) {
+        if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+            return LATIN;
+        }
+        if (c >= '가' && c <= '힣') {
+            return HANGUL;
+        }
+        return NONE;
+    }
+
+    private static void emit(StringBuilder run, int runType, Consumer<String> sink) {
+        if (run.length() == 0 || runType == NONE) {
+            return;
+        }
+        String word = run.toString();
+        sink.accept(word);
+        if (runType != HANGUL) {
+            return;
+        }
+
+        String stem = stripSuffix(word);
+        if (!stem.equals(word)) {
+            sink.accept(stem);
+        }
+        // A two-syllable stem is its own only bigram
+        if (stem.length() > 2) {
+            for (int i = 0; i + 2 <= stem.length(); i++) {
+                sink.accept(stem.substring(i, i + 2));
+            }
+        }
+    }
+}
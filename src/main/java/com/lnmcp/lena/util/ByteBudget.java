@@ -0,0 +1,68 @@
+package com.lnmcp.lena.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits how many bytes are processed at the same time across threads.
+ * Permits are counted in KiB so budgets beyond 2 GiB fit in a {@link Semaphore}. A request
+ * larger than the whole budget is clamped to it, so an oversized input waits until it can
+ * run alone instead of blocking forever.
+ */
+public class ByteBudget {
+
+    private static final long UNIT = 1024;
+
+    private final Semaphore permits;
+
+    private final int capacity;
+
+    /**
+     * @param maxBytes Bytes that may be processed concurrently
+     */
+    public ByteBudget(long maxBytes) {
+        this.capacity = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / UNIT));
+        this.permits = new Semaphore(capacity, true);
+    }
+
+    /**
+     * Wait until the given number of bytes fits in the budget and reserve it
+     *
+     * @param bytes The bytes about to be processed
+     * @return A lease that returns the bytes to the budget when closed
+     * @throws InterruptedException If interrupted while waiting
+     */
+    public Lease acquire(long bytes) throws InterruptedException {
+        int units = (int) Math.max(1, Math.min(capacity, (bytes + UNIT - 1) / UNIT));
+        permits.acquire(units);
+        return new Lease(units);
+    }
+
+    /**
+     * Bytes currently free in the budget
+     */
+    public long availableBytes() {
+        return permits.availablePermits() * UNIT;
+    }
+
+    /**
+     * Bytes reserved from a budget; closing it more than once has no effect.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final int units;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(int units) {
+            this.units = units;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                permits.release(units);
+            }
+        }
+    }
+}
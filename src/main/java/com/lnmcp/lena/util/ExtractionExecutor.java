@@ -0,0 +1,350 @@
+package com.lnmcp.lena.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size pool for blocking extraction work such as parsing document files and querying
+ * tables, kept apart from the common ForkJoinPool so that slow I/O cannot starve parallel
+ * streams and CPU-bound scoring elsewhere in the application.
+ * <p>
+ * Tasks wait in a bounded queue; when it is full the submitting thread runs the task itself,
+ * which slows submission down instead of failing it. A task running longer than the timeout
+ * is cancelled and its thread interrupted, and its result is reported as missing. Since
+ * parsers such as PDFBox do not check for interrupts, a task can also hand resources to
+ * {@link #closeOnTimeout} for the watchdog to close, which fails a blocked parse and frees
+ * what it holds even if the worker never returns. Counters
+ * of submitted, completed, failed, timed out and caller-run tasks and of busy time are kept
+ * for monitoring, and logged at a fixed interval while tasks keep arriving.
+ */
+@Slf4j
+public class ExtractionExecutor {
+
+    /**
+     * Work applied to each input; may throw
+     */
+    @FunctionalInterface
+    public interface Task<T, R> {
+        R apply(T input) throws Exception;
+    }
+
+    /**
+     * The task running on the current thread, if it runs on behalf of an executor
+     */
+    private static final ThreadLocal<TimedTask<?>> CURRENT_TASK = new ThreadLocal<>();
+
+    private final String name;
+
+    private final long taskTimeoutMillis;
+
+    private final ThreadPoolExecutor pool;
+
+    private final ScheduledExecutorService watchdog;
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    private final LongAdder callerRuns = new LongAdder();
+
+    private final LongAdder busyNanos = new LongAdder();
+
+    // Submitted count at the last periodic log; only read and written on the watchdog thread
+    private long loggedSubmitted;
+
+    /**
+     * @param name Prefix of the pool's thread names
+     * @param threads Number of worker threads
+     * @param queueCapacity Tasks that may wait for a worker before submitters run tasks themselves
+     * @param taskTimeoutMillis Longest a task may run before it is cancelled; 0 for no limit
+     */
+    public ExtractionExecutor(String name, int threads, int queueCapacity, long taskTimeoutMillis) {
+        this(name, threads, queueCapacity, taskTimeoutMillis, 0);
+    }
+
+    /**
+     * @param name Prefix of the pool's thread names
+     * @param threads Number of worker threads
+     * @param queueCapacity Tasks that may wait for a worker before submitters run tasks themselves
+     * @param taskTimeoutMillis Longest a task may run before it is cancelled; 0 for no limit
+     * @param statsIntervalMillis How often to log the counters if tasks were submitted since; 0 to log them only at shutdown
+     */
+    public ExtractionExecutor(String name, int threads, int queueCapacity, long taskTimeoutMillis,
+                              long statsIntervalMillis) {
+        this.name = name;
+        this.taskTimeoutMillis = taskTimeoutMillis;
+
+        int threadCount = Math.max(1, threads);
+        AtomicInteger workerThreads = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + workerThreads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException(name + " is shut down");
+                    }
+                    callerRuns.increment();
+                    runnable.run();
+                    if (runnable instanceof FutureTask && ((FutureTask<?>) runnable).isCancelled()) {
+                        // A timeout interrupted the submitting thread; clear it so the caller carries on
+                        Thread.interrupted();
+                    }
+                });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-Watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (statsIntervalMillis > 0) {
+            watchdog.scheduleWithFixedDelay(this::logStats, statsIntervalMillis, statsIntervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Apply a task to every input on the pool and wait for all of them
+     *
+     * @param inputs The inputs, e.g. file paths or table names
+     * @param task The work for one input
+     * @return One result per input, in input order; null where the task failed or timed out
+     */
+    public <T, R> List<R> map(List<T> inputs, Task<T, R> task) {
+        List<TimedTask<R>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            TimedTask<R> future = newTask(input, task);
+            futures.add(future);
+            submitted.increment();
+            try {
+                pool.execute(future);
+            } catch (RejectedExecutionException e) {
+                future.cancel(false);
+            }
+        }
+
+        List<R> results = new ArrayList<>(inputs.size());
+        for (int i = 0; i < futures.size(); i++) {
+            results.add(await(futures.get(i), inputs.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Wrap a task so that its own run is timed and cancelled by the watchdog if it runs too long.
+     * The timeout starts when the task starts, so time spent queued does not count against it.
+     */
+    private <T, R> TimedTask<R> newTask(T input, Task<T, R> task) {
+        AtomicReference<TimedTask<R>> self = new AtomicReference<>();
+        TimedTask<R> future = new TimedTask<>(() -> {
+            ScheduledFuture<?> deadline = null;
+            if (taskTimeoutMillis > 0) {
+                deadline = watchdog.schedule(() -> {
+                    TimedTask<R> running = self.get();
+                    running.expired = true;
+                    if (running.cancel(true)) {
+                        log.warn("{} task for {} timed out after {} ms", name, input, taskTimeoutMillis);
+                        running.closeResources();
+                    }
+                }, taskTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            TimedTask<?> outer = CURRENT_TASK.get();
+            CURRENT_TASK.set(self.get());
+            long start = System.nanoTime();
+            try {
+                return task.apply(input);
+            } finally {
+                busyNanos.add(System.nanoTime() - start);
+                if (deadline != null) {
+                    deadline.cancel(false);
+                }
+                self.get().finish();
+                // A task run by its submitter may itself belong to a task of another executor
+                if (outer != null) {
+                    CURRENT_TASK.set(outer);
+                } else {
+                    CURRENT_TASK.remove();
+                }
+            }
+        });
+        self.set(future);
+        return future;
+    }
+
+    private <T, R> R await(TimedTask<R> future, T input) {
+        try {
+            R result = future.get();
+            completed.increment();
+            return result;
+        } catch (CancellationException e) {
+            // Timed out, or rejected during shutdown
+            if (future.expired) {
+                timedOut.increment();
+            }
+            return null;
+        } catch (ExecutionException e) {
+            failed.increment();
+            log.error("{} task failed for {}", name, input, e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return null;
+        }
+    }
+
+    /**
+     * Have the watchdog close a resource if the task running on the current thread times out.
+     * Resources are closed in reverse order of registration, and forgotten once the task
+     * finishes, so the task must still close them itself. A resource registered after the task
+     * timed out is closed right away; outside an executor task this does nothing.
+     *
+     * @param resource E.g. an open document or a reservation that a blocked parse would hold on to
+     */
+    public static void closeOnTimeout(AutoCloseable resource) {
+        TimedTask<?> running = CURRENT_TASK.get();
+        if (running != null && !running.register(resource)) {
+            TimedTask.close(resource);
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Tasks run by the submitting thread because the queue was full
+     */
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * Total time spent running tasks, in milliseconds
+     */
+    public long getBusyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(busyNanos.sum());
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueuedCount() {
+        return pool.getQueue().size();
+    }
+
+    /**
+     * Log the counters, unless the pool has been idle since they were last logged
+     */
+    private void logStats() {
+        long submittedCount = getSubmittedCount();
+        if (submittedCount != loggedSubmitted) {
+            loggedSubmitted = submittedCount;
+            log.info("{}: {}", name, this);
+        }
+    }
+
+    /**
+     * Stop the pool, interrupting running tasks, and log its counters
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+        watchdog.shutdownNow();
+        log.info("{} stopped: {}", name, this);
+    }
+
+    /**
+     * Task that records whether the watchdog tried to cancel it, and what to close if it did
+     */
+    private static final class TimedTask<R> extends FutureTask<R> {
+
+        volatile boolean expired;
+
+        private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+
+        private boolean closed;
+
+        TimedTask(Callable<R> callable) {
+            super(callable);
+        }
+
+        /**
+         * @return false if the task timed out already and the resource was not kept
+         */
+        synchronized boolean register(AutoCloseable resource) {
+            if (closed) {
+                return false;
+            }
+            resources.push(resource);
+            return true;
+        }
+
+        /**
+         * Forget the resources of a task that has stopped running
+         */
+        synchronized void finish() {
+            resources.clear();
+        }
+
+        void closeResources() {
+            List<AutoCloseable> toClose;
+            synchronized (this) {
+                closed = true;
+                toClose = new ArrayList<>(resources);
+                resources.clear();
+            }
+            toClose.forEach(TimedTask::close);
+        }
+
+        static void close(AutoCloseable resource) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                log.warn("Error closing resource of a timed out task", e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d submitted, %d completed, %d failed, %d timed out, %d run by caller, "
+                        + "%d active, %d queued, %d ms busy", getSubmittedCount(), getCompletedCount(),
+                getFailedCount(), getTimedOutCount(), getCallerRunsCount(), getActiveCount(),
+                getQueuedCount(), getBusyMillis());
+    }
+}
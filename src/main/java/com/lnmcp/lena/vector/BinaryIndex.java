@@ -0,0 +1,176 @@
+package com.lnmcp.lena.vector;
+
+import com.lnmcp.lena.search.TopKSelector;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Two-stage index that keeps a sign-bit fingerprint per vector.
+ * Each vector is reduced to one bit per dimension (set when the component is positive) and
+ * packed into {@code long} words, so a 768-dimension vector takes 96 bytes and the fingerprints
+ * of a large store stay cache resident. A search ranks every fingerprint by Hamming distance
+ * to the query's fingerprint with {@link Long#bitCount}, then re-scores the best
+ * {@code candidates} slots with the exact cosine similarity from the store.
+ */
+public class BinaryIndex implements VectorIndex {
+
+    private final VectorStore store;
+
+    private volatile int candidates;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int words;
+
+    /**
+     * Fingerprints with a stride of {@link #words} longs per slot
+     */
+    private long[] fingerprints = new long[0];
+
+    private boolean[] indexed = new boolean[0];
+
+    private int slotLimit;
+
+    /**
+     * @param store The store holding the vectors
+     * @param candidates Slots re-scored exactly per query; the effective value is at least k
+     */
+    public BinaryIndex(VectorStore store, int candidates) {
+        this.store = store;
+        this.candidates = Math.max(1, candidates);
+    }
+
+    /**
+     * Change the number of Hamming candidates re-scored per query
+     */
+    public void setCandidates(int candidates) {
+        this.candidates = Math.max(1, candidates);
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    @Override
+    public void add(int slot) {
+        float[] vector = new float[store.dimension()];
+        if (!store.copyVector(slot, vector)) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (words == 0) {
+                words = wordsFor(vector.length);
+            } else if (wordsFor(vector.length) != words) {
+                return;
+            }
+            ensureCapacity(slot + 1);
+            Arrays.fill(fingerprints, slot * words, (slot + 1) * words, 0L);
+            fingerprint(vector, fingerprints, slot * words);
+            indexed[slot] = true;
+            slotLimit = Math.max(slotLimit, slot + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int slot) {
+        lock.writeLock().lock();
+        try {
+            if (slot < indexed.length) {
+                indexed[slot] = false;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int search(float[] query, int k, int[] slots, float[] scores) {
+        if (k <= 0 || query.length != store.dimension()) {
+            return 0;
+        }
+
+        TopKSelector nearest;
+        lock.readLock().lock();
+        try {
+            if (words == 0) {
+                return 0;
+            }
+            long[] queryBits = new long[words];
+            fingerprint(query, queryBits, 0);
+
+            // Stage one: smallest Hamming distance first, so the negated distance is the score
+            nearest = new TopKSelector(Math.max(k, candidates));
+            for (int slot = 0; slot < slotLimit; slot++) {
+                if (!indexed[slot]) {
+                    continue;
+                }
+                int distance = 0;
+                int base = slot * words;
+                for (int w = 0; w < words; w++) {
+                    distance += Long.bitCount(queryBits[w] ^ fingerprints[base + w]);
+                }
+                nearest.offer(slot, -distance);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Stage two: exact cosine similarity over the candidates
+        int[] candidateSlots = new int[nearest.size()];
+        int count = nearest.drainDescending(candidateSlots, new float[candidateSlots.length]);
+        float[] unitQuery = VectorMath.normalize(query);
+        TopKSelector results = new TopKSelector(k);
+        for (int i = 0; i < count; i++) {
+            int slot = candidateSlots[i];
+            if (store.idAt(slot) != null) {
+                results.offer(slot, store.exactScore(slot, unitQuery));
+            }
+        }
+        return results.drainDescending(slots, scores);
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            words = 0;
+            fingerprints = new long[0];
+            indexed = new boolean[0];
+            slotLimit = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static int wordsFor(int dimension) {
+        return (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    /**
+     * Set one bit per positive component, packing 64 components per word
+     */
+    private static void fingerprint(float[] vector, long[] target, int offset) {
+        for (int d = 0; d < vector.length; d++) {
+            if (vector[d] > 0.0f) {
+                target[offset + (d >>> 6)] |= 1L << (d & 63);
+            }
+        }
+    }
+
+    /**
+     * Grow the per-slot arrays to cover a slot limit. Must be called with the write lock held.
+     */
+    private void ensureCapacity(int limit) {
+        if (limit <= indexed.length) {
+            return;
+        }
+        int capacity = Math.max(limit, Math.max(64, indexed.length * 2));
+        indexed = Arrays.copyOf(indexed, capacity);
+        fingerprints = Arrays.copyOf(fingerprints, capacity * words);
+    }
+}
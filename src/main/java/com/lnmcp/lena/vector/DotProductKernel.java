@@ -0,0 +1,37 @@
+package com.lnmcp.lena.vector;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dot product over ranges of primitive float and int8 arrays, and of little-endian float32
+ * rows in byte buffers such as memory-mapped files.
+ */
+interface DotProductKernel {
+
+    /**
+     * Dot product of {@code length} components starting at the given offsets
+     */
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+    /**
+     * Dot product of {@code length} float components with int8 codes
+     */
+    float dot(float[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    /**
+     * Integer dot product of {@code length} int8 codes starting at the given offsets
+     */
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    /**
+     * Dot product of {@code length} float components with little-endian floats in a buffer
+     *
+     * @param bByteOffset Byte offset of the first float in the buffer
+     */
+    float dot(float[] a, int aOffset, ByteBuffer b, int bByteOffset, int length);
+
+    /**
+     * Dot product of {@code length} little-endian floats in two buffers
+     */
+    float dot(ByteBuffer a, int aByteOffset, ByteBuffer b, int bByteOffset, int length);
+}
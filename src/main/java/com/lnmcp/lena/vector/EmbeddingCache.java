@@ -0,0 +1,124 @@
+package com.lnmcp.lena.vector;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lnmcp.lena.util.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Cache of generated embeddings keyed by the XXH64 hash of the text's UTF-8 bytes, seeded
+ * with the hash of the model name. The in-memory tier is a size-bounded Caffeine cache
+ * (W-TinyLFU eviction); an optional on-disk tier keeps one small file per embedding so that
+ * identical text is never sent to the embedding model twice, even across restarts.
+ */
+@Slf4j
+public class EmbeddingCache {
+
+    private final Cache<Long, float[]> memory;
+
+    private final Path diskDirectory;
+
+    /**
+     * @param maximumEntries Maximum number of embeddings kept in memory
+     * @param diskDirectory Directory of the on-disk tier, or null to keep embeddings in memory only
+     */
+    public EmbeddingCache(long maximumEntries, Path diskDirectory) {
+        this.memory = Caffeine.newBuilder()
+                .maximumSize(maximumEntries)
+                .recordStats()
+                .build();
+        this.diskDirectory = diskDirectory;
+    }
+
+    /**
+     * Compute the cache key of a text embedded by a model
+     */
+    public static long key(String model, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return ContentHash.xxHash64(bytes, ContentHash.hash(model));
+    }
+
+    /**
+     * Get a cached embedding, checking memory first and then disk
+     *
+     * @return The embedding, or null if it is not cached
+     */
+    public float[] get(long key) {
+        float[] embedding = memory.getIfPresent(key);
+        if (embedding == null && diskDirectory != null) {
+            embedding = readFromDisk(key);
+            if (embedding != null) {
+                memory.put(key, embedding);
+            }
+        }
+        return embedding;
+    }
+
+    /**
+     * Cache an embedding in memory and, if enabled, on disk
+     */
+    public void put(long key, float[] embedding) {
+        memory.put(key, embedding);
+        if (diskDirectory != null) {
+            writeToDisk(key, embedding);
+        }
+    }
+
+    /**
+     * Hit and miss statistics of the in-memory tier
+     */
+    public CacheStats stats() {
+        return memory.stats();
+    }
+
+    /**
+     * Remove every embedding from the in-memory tier
+     */
+    public void invalidateAll() {
+        memory.invalidateAll();
+    }
+
+    private Path diskPath(long key) {
+        String name = String.format("%016x", key);
+        return diskDirectory.resolve(name.substring(0, 2)).resolve(name + ".bin");
+    }
+
+    private float[] readFromDisk(long key) {
+        Path path = diskPath(key);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+            float[] embedding = new float[buffer.remaining() / Float.BYTES];
+            buffer.asFloatBuffer().get(embedding);
+            return embedding;
+        } catch (IOException e) {
+            log.warn("Error reading cached embedding {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(long key, float[] embedding) {
+        Path path = diskPath(key);
+        try {
+            Files.createDirectories(path.getParent());
+            ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asFloatBuffer().put(embedding);
+            Path temp = Files.createTempFile(path.getParent(), "embedding", ".tmp");
+            Files.write(temp, buffer.array());
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Error writing cached embedding {}: {}", path, e.getMessage());
+        }
+    }
+}
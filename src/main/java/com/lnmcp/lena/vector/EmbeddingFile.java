@@ -0,0 +1,279 @@
+package com.lnmcp.lena.vector;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Versioned binary file holding a snapshot of the embedding store.
+ * <pre>
+ * header   int magic "LNVE", int version, int dimension, int count, long vectorOffset,
+ *          int modelLength, byte[modelLength] model (UTF-8)
+ * id table count x (int idLength, byte[idLength] id (UTF-8), long contentHash)
+ * padding  up to vectorOffset (64-byte aligned)
+ * vectors  count x dimension float32, fixed stride
+ * </pre>
+ * All values are little-endian. The vectors are read through {@link FileChannel#map} in
+ * read-only segments of at most 1 GiB, each holding whole rows, so files are not limited to
+ * 2 GiB and a {@link VectorStore} can score them in place instead of copying them to the heap.
+ */
+public final class EmbeddingFile {
+
+    private static final int MAGIC = 0x45564E4C; // "LNVE" read little-endian
+
+    private static final int VERSION = 1;
+
+    private static final int ALIGNMENT = 64;
+
+    // Magic, version, dimension, count and vector offset
+    private static final int FIXED_HEADER_BYTES = 4 * 4 + 8;
+
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private EmbeddingFile() {
+    }
+
+    /**
+     * Write a store snapshot to a file, replacing it atomically
+     *
+     * @param path The target file
+     * @param model The embedding model that produced the vectors
+     * @param snapshot The vectors to write
+     * @param contentHashes Hash of the content each id was embedded from
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(Path path, String model, VectorStore.Snapshot snapshot,
+                             Map<String, Long> contentHashes) throws IOException {
+        byte[] modelBytes = model.getBytes(StandardCharsets.UTF_8);
+        String[] ids = snapshot.getIds();
+        byte[][] idBytes = new byte[ids.length][];
+        long headerSize = FIXED_HEADER_BYTES + 4 + modelBytes.length;
+        for (int i = 0; i < ids.length; i++) {
+            idBytes[i] = ids[i].getBytes(StandardCharsets.UTF_8);
+            headerSize += 4 + idBytes[i].length + 8;
+        }
+        long vectorOffset = (headerSize + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+        if (vectorOffset > Integer.MAX_VALUE) {
+            throw new IOException("Embedding file id table exceeds 2 GiB: " + path);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate((int) vectorOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(snapshot.getDimension());
+        header.putInt(ids.length);
+        header.putLong(vectorOffset);
+        header.putInt(modelBytes.length);
+        header.put(modelBytes);
+        for (int i = 0; i < ids.length; i++) {
+            header.putInt(idBytes[i].length);
+            header.put(idBytes[i]);
+            header.putLong(contentHashes.getOrDefault(ids[i], 0L));
+        }
+        header.position(0);
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            FloatBuffer floats = chunk.asFloatBuffer();
+            float[] vectors = snapshot.getVectors();
+            int position = 0;
+            while (position < vectors.length) {
+                int length = Math.min(floats.capacity(), vectors.length - position);
+                floats.clear();
+                floats.put(vectors, position, length);
+                chunk.clear();
+                chunk.limit(length * Float.BYTES);
+                writeFully(channel, chunk);
+                position += length;
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map an embedding file and read its header and id table
+     *
+     * @param path The file to read
+     * @return The file contents; vectors are read lazily from the mapping
+     * @throws IOException If the file cannot be read or is not a supported embedding file
+     */
+    public static Contents read(Path path) throws IOException {
+        return read(path, SEGMENT_BYTES);
+    }
+
+    /**
+     * Read an embedding file, mapping its vectors in segments of at most the given size
+     */
+    static Contents read(Path path, long segmentBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < FIXED_HEADER_BYTES) {
+                throw new IOException("Not an embedding file: " + path);
+            }
+            ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (fixed.hasRemaining() && channel.read(fixed, fixed.position()) >= 0) {
+                // Read until the fixed header is complete
+            }
+            fixed.flip();
+            if (fixed.remaining() < FIXED_HEADER_BYTES || fixed.getInt() != MAGIC) {
+                throw new IOException("Not an embedding file: " + path);
+            }
+            int version = fixed.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported embedding file version " + version + ": " + path);
+            }
+            int dimension = fixed.getInt();
+            int count = fixed.getInt();
+            long vectorOffset = fixed.getLong();
+            if (dimension < 0 || count < 0 || vectorOffset < FIXED_HEADER_BYTES
+                    || vectorOffset > Math.min(fileSize, Integer.MAX_VALUE)) {
+                throw new IOException("Corrupt embedding file header: " + path);
+            }
+            long rowBytes = (long) dimension * Float.BYTES;
+            if (fileSize < vectorOffset + count * rowBytes) {
+                throw new IOException("Truncated embedding file: " + path);
+            }
+
+            // The id table is read once onto the heap; only the vectors stay mapped
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, vectorOffset);
+            header.order(ByteOrder.LITTLE_ENDIAN).position(FIXED_HEADER_BYTES);
+            String model = readString(header);
+            String[] ids = new String[count];
+            long[] hashes = new long[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = readString(header);
+                hashes[i] = header.getLong();
+            }
+
+            int rowsPerSegment = (int) Math.min(Integer.MAX_VALUE, Math.max(1, Math.min(segmentBytes, SEGMENT_BYTES) / Math.max(1, rowBytes)));
+            int segmentCount = count == 0 ? 0 : (count - 1) / rowsPerSegment + 1;
+            ByteBuffer[] segments = new ByteBuffer[segmentCount];
+            for (int segment = 0; segment < segmentCount; segment++) {
+                long firstRow = (long) segment * rowsPerSegment;
+                long rows = Math.min(rowsPerSegment, count - firstRow);
+                segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                vectorOffset + firstRow * rowBytes, rows * rowBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+            return new Contents(model, dimension, ids, hashes, segments, rowsPerSegment);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt embedding file: " + path, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Header, id table and mapped vector data of an embedding file.
+     */
+    public static final class Contents {
+
+        private final String model;
+
+        private final int dimension;
+
+        private final String[] ids;
+
+        private final long[] contentHashes;
+
+        // Read-only mappings of whole rows, rowsPerSegment rows each except the last
+        private final ByteBuffer[] segments;
+
+        private final int rowsPerSegment;
+
+        Contents(String model, int dimension, String[] ids, long[] contentHashes,
+                 ByteBuffer[] segments, int rowsPerSegment) {
+            this.model = model;
+            this.dimension = dimension;
+            this.ids = ids;
+            this.contentHashes = contentHashes;
+            this.segments = segments;
+            this.rowsPerSegment = rowsPerSegment;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+
+        public String getId(int index) {
+            return ids[index];
+        }
+
+        public long getContentHash(int index) {
+            return contentHashes[index];
+        }
+
+        /**
+         * Copy the vector at an index of the id table into a buffer of {@link #getDimension()} floats
+         */
+        public void readVector(int index, float[] target) {
+            readVector(index, target, 0);
+        }
+
+        /**
+         * Copy the vector at an index of the id table into a slab at an offset
+         */
+        void readVector(int index, float[] target, int offset) {
+            ByteBuffer segment = segment(index);
+            int byteOffset = byteOffset(index);
+            for (int i = 0; i < dimension; i++) {
+                target[offset + i] = segment.getFloat(byteOffset + i * Float.BYTES);
+            }
+        }
+
+        /**
+         * Mapped segment holding the vector at an index, as little-endian floats
+         */
+        ByteBuffer segment(int index) {
+            return segments[index / rowsPerSegment];
+        }
+
+        /**
+         * Byte offset of the vector at an index within its {@link #segment}
+         */
+        int byteOffset(int index) {
+            return (index % rowsPerSegment) * dimension * Float.BYTES;
+        }
+    }
+}
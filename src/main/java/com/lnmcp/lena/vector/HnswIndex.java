@@ -0,0 +1,527 @@
+package com.lnmcp.lena.vector;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest-neighbour index based on a hierarchical navigable small world graph.
+ * Nodes are the slots of a {@link VectorStore}; vectors are read from the store, so the
+ * index only holds the layered adjacency lists.
+ *
+ * <ul>
+ *   <li>{@code m}: links per node on the upper layers (twice as many on layer 0)</li>
+ *   <li>{@code efConstruction}: candidate list size while inserting; higher builds a better graph</li>
+ *   <li>{@code efSearch}: candidate list size while searching; higher trades latency for recall</li>
+ * </ul>
+ *
+ * Removed slots are tombstoned: they still route searches but are never returned.
+ */
+public class HnswIndex implements VectorIndex {
+
+    private final VectorStore store;
+
+    private final int m;
+
+    private final int maxM0;
+
+    private final int efConstruction;
+
+    private volatile int efSearch;
+
+    private final double levelMultiplier;
+
+    private final Random random = new Random(42);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    /**
+     * Top layer of each slot, or -1 if the slot is not in the graph
+     */
+    private int[] levels = new int[0];
+
+    /**
+     * Adjacency lists per slot and layer; element 0 of each list holds its length
+     */
+    private int[][][] links = new int[0][][];
+
+    private boolean[] deleted = new boolean[0];
+
+    private int entryPoint = -1;
+
+    private int maxLevel = -1;
+
+    public HnswIndex(VectorStore store, int m, int efConstruction, int efSearch) {
+        if (m < 2) {
+            throw new IllegalArgumentException("HNSW m must be at least 2");
+        }
+        this.store = store;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1.0 / Math.log(m);
+    }
+
+    /**
+     * Change the search-time candidate list size
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    @Override
+    public void add(int slot) {
+        float[] vector = new float[store.dimension()];
+        if (vector.length == 0 || !store.copyVector(slot, vector)) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(slot + 1);
+            int level;
+            if (levels[slot] >= 0) {
+                // The slot's vector was replaced: keep its layer but rebuild its links
+                level = levels[slot];
+                for (int[] list : links[slot]) {
+                    list[0] = 0;
+                }
+                deleted[slot] = false;
+                if (entryPoint == slot) {
+                    entryPoint = highestNodeExcept(slot);
+                    if (entryPoint < 0) {
+                        entryPoint = slot;
+                        return;
+                    }
+                    maxLevel = levels[entryPoint];
+                }
+            } else {
+                level = randomLevel();
+                levels[slot] = level;
+                links[slot] = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    links[slot][l] = new int[capacity(l) + 1];
+                }
+                deleted[slot] = false;
+            }
+
+            if (entryPoint < 0) {
+                entryPoint = slot;
+                maxLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            float currentScore = store.score(current, vector);
+            for (int l = maxLevel; l > level; l--) {
+                current = greedyClosest(vector, current, currentScore, l);
+                currentScore = store.score(current, vector);
+            }
+
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                ScoreHeap found = searchLayer(vector, current, currentScore, efConstruction, l, slot, false);
+                int count = found.size();
+                int[] candidates = new int[count];
+                float[] candidateScores = new float[count];
+                found.drainDescending(candidates, candidateScores);
+
+                int[] selected = selectNeighbours(candidates, candidateScores, count, m);
+                int[] list = links[slot][l];
+                list[0] = selected.length;
+                System.arraycopy(selected, 0, list, 1, selected.length);
+                for (int neighbour : selected) {
+                    connect(neighbour, slot, l);
+                }
+                if (count > 0) {
+                    current = candidates[0];
+                    currentScore = candidateScores[0];
+                }
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(int slot) {
+        lock.writeLock().lock();
+        try {
+            if (slot >= 0 && slot < levels.length && levels[slot] >= 0) {
+                deleted[slot] = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int search(float[] query, int k, int[] slots, float[] scores) {
+        if (k <= 0 || query.length != store.dimension()) {
+            return 0;
+        }
+        float[] unitQuery = VectorMath.normalize(query);
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return 0;
+            }
+            int current = entryPoint;
+            float currentScore = store.score(current, unitQuery);
+            for (int l = maxLevel; l > 0; l--) {
+                current = greedyClosest(unitQuery, current, currentScore, l);
+                currentScore = store.score(current, unitQuery);
+            }
+
+            ScoreHeap found = searchLayer(unitQuery, current, currentScore, Math.max(efSearch, k), 0, -1, true);
+            int count = found.size();
+            int[] resultSlots = new int[count];
+            float[] resultScores = new float[count];
+            found.drainDescending(resultSlots, resultScores);
+
+            int n = Math.min(k, count);
+            System.arraycopy(resultSlots, 0, slots, 0, n);
+            System.arraycopy(resultScores, 0, scores, 0, n);
+            return n;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            levels = new int[0];
+            links = new int[0][][];
+            deleted = new boolean[0];
+            entryPoint = -1;
+            maxLevel = -1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Walk a single layer greedily towards the query
+     */
+    private int greedyClosest(float[] unitQuery, int start, float startScore, int level) {
+        int current = start;
+        float currentScore = startScore;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbour = list[i];
+                float score = store.score(neighbour, unitQuery);
+                if (score > currentScore) {
+                    current = neighbour;
+                    currentScore = score;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one layer
+     *
+     * @param exclude Slot never to visit (the node being inserted), or -1
+     * @param skipDeleted Whether tombstoned slots are kept out of the results
+     * @return A min-heap of at most ef results
+     */
+    private ScoreHeap searchLayer(float[] unitQuery, int start, float startScore,
+                                  int ef, int level, int exclude, boolean skipDeleted) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(levels.length);
+        if (exclude >= 0) {
+            visited.visit(exclude);
+        }
+
+        ScoreHeap candidates = new ScoreHeap(ef, true);
+        ScoreHeap results = new ScoreHeap(ef, false);
+        visited.visit(start);
+        candidates.push(start, startScore);
+        if (!skipDeleted || !deleted[start]) {
+            results.push(start, startScore);
+        }
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.topScore();
+            int candidate = candidates.pop();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            int[] list = links[candidate][level];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbour = list[i];
+                if (!visited.visit(neighbour)) {
+                    continue;
+                }
+                float score = store.score(neighbour, unitQuery);
+                if (results.size() < ef || score > results.topScore()) {
+                    candidates.push(neighbour, score);
+                    if (!skipDeleted || !deleted[neighbour]) {
+                        results.push(neighbour, score);
+                        if (results.size() > ef) {
+                            results.pop();
+                        }
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Pick diverse neighbours: a candidate is kept only if it is closer to the base node
+     * than to every neighbour already kept. Remaining places are filled with the closest
+     * pruned candidates so that small graphs stay connected.
+     *
+     * @param candidates Candidate slots, most similar to the base node first
+     * @param scores Similarity of each candidate to the base node
+     */
+    private int[] selectNeighbours(int[] candidates, float[] scores, int count, int limit) {
+        if (count <= limit) {
+            return Arrays.copyOf(candidates, count);
+        }
+        int[] selected = new int[limit];
+        boolean[] taken = new boolean[count];
+        int selectedCount = 0;
+        for (int i = 0; i < count && selectedCount < limit; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (store.similarity(candidates[i], selected[j]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = candidates[i];
+                taken[i] = true;
+            }
+        }
+        for (int i = 0; i < count && selectedCount < limit; i++) {
+            if (!taken[i]) {
+                selected[selectedCount++] = candidates[i];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Add a link from a node to a new neighbour, re-selecting its neighbours when full
+     */
+    private void connect(int node, int neighbour, int level) {
+        int[] list = links[node][level];
+        for (int i = 1; i <= list[0]; i++) {
+            if (list[i] == neighbour) {
+                return;
+            }
+        }
+        int limit = capacity(level);
+        if (list[0] < limit) {
+            list[++list[0]] = neighbour;
+            return;
+        }
+
+        int count = list[0] + 1;
+        int[] candidates = new int[count];
+        float[] scores = new float[count];
+        for (int i = 0; i < list[0]; i++) {
+            candidates[i] = list[i + 1];
+            scores[i] = store.similarity(node, candidates[i]);
+        }
+        candidates[count - 1] = neighbour;
+        scores[count - 1] = store.similarity(node, neighbour);
+        sortDescending(candidates, scores, count);
+
+        int[] selected = selectNeighbours(candidates, scores, count, limit);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    private int capacity(int level) {
+        return level == 0 ? maxM0 : m;
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - random.nextDouble();
+        return (int) Math.floor(-Math.log(uniform) * levelMultiplier);
+    }
+
+    private int highestNodeExcept(int slot) {
+        int best = -1;
+        for (int i = 0; i < levels.length; i++) {
+            if (i != slot && levels[i] >= 0 && (best < 0 || levels[i] > levels[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= levels.length) {
+            return;
+        }
+        int capacity = Math.max(required, Math.max(64, levels.length * 2));
+        int oldLength = levels.length;
+        levels = Arrays.copyOf(levels, capacity);
+        Arrays.fill(levels, oldLength, capacity, -1);
+        links = Arrays.copyOf(links, capacity);
+        deleted = Arrays.copyOf(deleted, capacity);
+    }
+
+    private static void sortDescending(int[] slots, float[] scores, int count) {
+        for (int i = 1; i < count; i++) {
+            int slot = slots[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                slots[j + 1] = slots[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            slots[j + 1] = slot;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * Binary heap of (slot, score) pairs kept in primitive arrays
+     */
+    private static final class ScoreHeap {
+
+        private int[] slots;
+
+        private float[] scores;
+
+        private int size;
+
+        private final boolean max;
+
+        ScoreHeap(int capacity, boolean max) {
+            this.slots = new int[Math.max(capacity + 1, 16)];
+            this.scores = new float[slots.length];
+            this.max = max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int slot, float score) {
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                slots[i] = slots[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            slots[i] = slot;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = slots[0];
+            size--;
+            if (size > 0) {
+                int slot = slots[size];
+                float score = scores[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                        child++;
+                    }
+                    if (!before(scores[child], score)) {
+                        break;
+                    }
+                    slots[i] = slots[child];
+                    scores[i] = scores[child];
+                    i = child;
+                }
+                slots[i] = slot;
+                scores[i] = score;
+            }
+            return top;
+        }
+
+        /**
+         * Empty a min-heap into arrays ordered from highest to lowest score
+         */
+        void drainDescending(int[] targetSlots, float[] targetScores) {
+            for (int i = size - 1; i >= 0; i--) {
+                targetScores[i] = topScore();
+                targetSlots[i] = pop();
+            }
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * Visited marks reused across searches on the same thread
+     */
+    private static final class VisitedSet {
+
+        private int[] marks = new int[0];
+
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[capacity];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /**
+         * Mark a slot as visited
+         *
+         * @return true if the slot had not been visited yet
+         */
+        boolean visit(int slot) {
+            if (marks[slot] == epoch) {
+                return false;
+            }
+            marks[slot] = epoch;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.lnmcp.lena.vector;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * One generation of the passage embedding index: vectors produced by a single embedding model,
+ * tagged with that model and their dimension, together with the search index over them.
+ * When the configured model changes a new generation is built alongside the serving one and
+ * replaced as a whole, so a generation never mixes vector spaces.
+ */
+public class IndexGeneration {
+
+    private final long number;
+
+    private final String model;
+
+    private final VectorStore store;
+
+    private final VectorIndex index;
+
+    // Hash of the content each stored embedding was generated from
+    private final Map<String, Long> contentHashes = new ConcurrentHashMap<>();
+
+    // False while the index is being rebuilt over loaded vectors; searches scan exhaustively meanwhile
+    private volatile boolean indexReady = true;
+
+    /**
+     * @param number Sequence number of the generation, for logging
+     * @param model The embedding model that produces every vector in this generation
+     * @param store The store holding the vectors
+     * @param index Approximate index over the store, or null when searching exhaustively
+     */
+    public IndexGeneration(long number, String model, VectorStore store, VectorIndex index) {
+        this.number = number;
+        this.model = model;
+        this.store = store;
+        this.index = index;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Dimension of the vectors in this generation, or 0 while it is empty
+     */
+    public int dimension() {
+        return store.dimension();
+    }
+
+    public VectorStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return The approximate index, or null when searching exhaustively, including while the
+     *         index is still being rebuilt after {@link #load}
+     */
+    public VectorIndex getIndex() {
+        return indexReady ? index : null;
+    }
+
+    /**
+     * Check whether the approximate index, if any, covers every stored vector
+     */
+    public boolean isIndexReady() {
+        return indexReady;
+    }
+
+    /**
+     * Hash of the content each stored embedding was generated from
+     */
+    public Map<String, Long> getContentHashes() {
+        return Collections.unmodifiableMap(contentHashes);
+    }
+
+    /**
+     * Store a vector and add it to the index
+     *
+     * @param id The vector identifier
+     * @param vector The vector
+     * @param contentHash Hash of the content the vector was generated from
+     * @throws IllegalArgumentException If the vector dimension does not match this generation
+     */
+    public void put(String id, float[] vector, long contentHash) {
+        int previous = store.slotOf(id);
+        int slot = store.put(id, vector);
+        if (index != null) {
+            if (previous >= 0 && previous != slot) {
+                // A vector loaded from a file moved out of its read-only mapped slot
+                index.remove(previous);
+            }
+            index.add(slot);
+        }
+        contentHashes.put(id, contentHash);
+    }
+
+    /**
+     * Serve the vectors of an embedding file. A float32 store scores them in place from the file
+     * mapping; an int8 store has to quantize them, so they are copied in. The approximate index,
+     * if any, is rebuilt over the loaded vectors on the given executor rather than before
+     * returning; until it is done, {@link #getIndex()} returns null so searches scan exhaustively.
+     * Vectors put meanwhile are indexed as usual.
+     *
+     * @param contents The embedding file, read with {@link EmbeddingFile#read}
+     * @param indexBuilder Runs the index rebuild
+     * @throws IllegalStateException If the generation is not empty
+     * @throws IllegalArgumentException If the file's dimension does not match this generation
+     */
+    public void load(EmbeddingFile.Contents contents, Executor indexBuilder) {
+        if (!store.isEmpty()) {
+            throw new IllegalStateException("Cannot load embeddings into non-empty " + this);
+        }
+        if (store.precision() == VectorPrecision.FLOAT32) {
+            store.load(contents);
+        } else {
+            float[] vector = new float[contents.getDimension()];
+            for (int i = 0; i < contents.size(); i++) {
+                contents.readVector(i, vector);
+                store.put(contents.getId(i), vector);
+            }
+        }
+        for (int i = 0; i < contents.size(); i++) {
+            contentHashes.put(contents.getId(i), contents.getContentHash(i));
+        }
+
+        if (index == null || contents.size() == 0) {
+            return;
+        }
+        int loadedSlots = store.slotLimit();
+        indexReady = false;
+        indexBuilder.execute(() -> {
+            try {
+                for (int slot = 0; slot < loadedSlots; slot++) {
+                    // Slots freed meanwhile are skipped; the index ignores slots without a vector
+                    if (store.idAt(slot) != null) {
+                        index.add(slot);
+                    }
+                }
+            } finally {
+                indexReady = true;
+            }
+        });
+    }
+
+    /**
+     * Remove a vector from the store and index
+     *
+     * @return true if a vector was removed
+     */
+    public boolean remove(String id) {
+        int slot = store.slotOf(id);
+        if (slot < 0) {
+            return false;
+        }
+        if (index != null) {
+            index.remove(slot);
+        }
+        store.remove(id);
+        contentHashes.remove(id);
+        return true;
+    }
+
+    /**
+     * Check whether a stored vector was generated from content with the given hash
+     */
+    public boolean isUpToDate(String id, long contentHash) {
+        Long storedHash = contentHashes.get(id);
+        return storedHash != null && storedHash == contentHash && store.contains(id);
+    }
+
+    /**
+     * Remove every vector
+     */
+    public void clear() {
+        store.clear();
+        if (index != null) {
+            index.clear();
+        }
+        contentHashes.clear();
+    }
+
+    /**
+     * Remove every vector and release the store's resources
+     */
+    public void close() {
+        if (index != null) {
+            index.clear();
+        }
+        contentHashes.clear();
+        store.close();
+    }
+
+    @Override
+    public String toString() {
+        return "generation " + number + " (" + model + ", dimension " + dimension() + ")";
+    }
+}
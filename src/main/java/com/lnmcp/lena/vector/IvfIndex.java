@@ -0,0 +1,429 @@
+package com.lnmcp.lena.vector;
+
+import com.lnmcp.lena.search.TopKSelector;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Approximate nearest-neighbour index based on an inverted file.
+ * A coarse quantizer of {@code nlist} centroids is trained with spherical k-means on a
+ * sample of the stored vectors, and every slot is filed in the posting list of its nearest
+ * centroid. A search scores the query against the centroids and then only the vectors in
+ * the {@code nprobe} closest lists. The index holds the centroids and posting lists only,
+ * so its memory and build cost grow much more slowly than a graph index.
+ *
+ * <ul>
+ *   <li>{@code nlist}: number of centroids; 0 picks the square root of the vector count at training time</li>
+ *   <li>{@code nprobe}: posting lists scanned per query; higher trades latency for recall</li>
+ *   <li>{@code minTrainingVectors}: below this many vectors searches scan every vector exactly</li>
+ *   <li>{@code retrainGrowth}: retrain in the background once the store has grown by this fraction</li>
+ * </ul>
+ */
+@Slf4j
+public class IvfIndex implements VectorIndex {
+
+    private static final int KMEANS_ITERATIONS = 8;
+
+    private static final int SAMPLE_PER_CENTROID = 32;
+
+    private final VectorStore store;
+
+    private final int nlist;
+
+    private volatile int nprobe;
+
+    private final int minTrainingVectors;
+
+    private final double retrainGrowth;
+
+    private final Executor trainingExecutor;
+
+    private final Random random = new Random(42);
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicBoolean training = new AtomicBoolean();
+
+    /**
+     * Unit-length centroids with a stride of the store dimension, or null until trained
+     */
+    private float[] centroids;
+
+    private int centroidCount;
+
+    private int[][] lists = new int[0][];
+
+    private int[] listSizes = new int[0];
+
+    /**
+     * Posting list of each slot, or -1 if the slot is not filed
+     */
+    private int[] listOfSlot = new int[0];
+
+    private int[] positionOfSlot = new int[0];
+
+    /**
+     * Slots added while a training run was in progress; filed again when it completes
+     */
+    private int[] addedDuringTraining = new int[0];
+
+    private int addedDuringTrainingCount;
+
+    private int trainedSize;
+
+    /**
+     * @param store The store holding the vectors
+     * @param nlist Number of centroids, or 0 to pick the square root of the vector count
+     * @param nprobe Posting lists scanned per query
+     * @param minTrainingVectors Vectors needed before the quantizer is trained
+     * @param retrainGrowth Fraction the store must grow by before retraining
+     * @param trainingExecutor Runs training in the background
+     */
+    public IvfIndex(VectorStore store, int nlist, int nprobe, int minTrainingVectors, double retrainGrowth,
+                    Executor trainingExecutor) {
+        this.store = store;
+        this.nlist = Math.max(0, nlist);
+        this.nprobe = Math.max(1, nprobe);
+        this.minTrainingVectors = Math.max(1, minTrainingVectors);
+        this.retrainGrowth = retrainGrowth;
+        this.trainingExecutor = trainingExecutor;
+    }
+
+    /**
+     * Change the number of posting lists scanned per query
+     */
+    public void setNprobe(int nprobe) {
+        this.nprobe = Math.max(1, nprobe);
+    }
+
+    public int getNprobe() {
+        return nprobe;
+    }
+
+    /**
+     * Check whether the coarse quantizer has been trained
+     */
+    public boolean isTrained() {
+        lock.readLock().lock();
+        try {
+            return centroids != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(int slot) {
+        lock.writeLock().lock();
+        try {
+            ensureCapacity(slot + 1);
+            unfile(slot);
+            if (centroids != null) {
+                float[] vector = new float[store.dimension()];
+                if (store.copyVector(slot, vector)) {
+                    file(slot, nearestCentroid(vector, centroids, centroidCount));
+                }
+            }
+            if (training.get()) {
+                if (addedDuringTrainingCount == addedDuringTraining.length) {
+                    addedDuringTraining = Arrays.copyOf(addedDuringTraining, Math.max(64, addedDuringTrainingCount * 2));
+                }
+                addedDuringTraining[addedDuringTrainingCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        scheduleTrainingIfNeeded();
+    }
+
+    @Override
+    public void remove(int slot) {
+        lock.writeLock().lock();
+        try {
+            if (slot < listOfSlot.length) {
+                unfile(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int search(float[] query, int k, int[] slots, float[] scores) {
+        if (k <= 0 || query.length != store.dimension()) {
+            return 0;
+        }
+
+        lock.readLock().lock();
+        try {
+            TopKSelector results = new TopKSelector(k);
+            if (centroids == null) {
+                // Too few vectors to train on yet; an exhaustive scan is cheap at this size
+                store.scan(query, results::offer);
+                return results.drainDescending(slots, scores);
+            }
+
+            float[] unitQuery = VectorMath.normalize(query);
+            int probes = Math.min(nprobe, centroidCount);
+            TopKSelector nearest = new TopKSelector(probes);
+            int dimension = unitQuery.length;
+            for (int c = 0; c < centroidCount; c++) {
+                nearest.offer(c, VectorMath.dot(unitQuery, centroids, c * dimension));
+            }
+            int[] probeLists = new int[probes];
+            float[] probeScores = new float[probes];
+            int probeCount = nearest.drainDescending(probeLists, probeScores);
+
+            for (int p = 0; p < probeCount; p++) {
+                int list = probeLists[p];
+                int[] members = lists[list];
+                for (int i = 0; i < listSizes[list]; i++) {
+                    results.offer(members[i], store.score(members[i], unitQuery));
+                }
+            }
+            return results.drainDescending(slots, scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            centroids = null;
+            centroidCount = 0;
+            lists = new int[0][];
+            listSizes = new int[0];
+            listOfSlot = new int[0];
+            positionOfSlot = new int[0];
+            addedDuringTrainingCount = 0;
+            trainedSize = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Train the coarse quantizer on the vectors currently stored and refile every slot.
+     * Centroids and assignments are computed without holding the index lock, so searches
+     * keep using the previous quantizer until the new one is swapped in.
+     */
+    public void train() {
+        long start = System.currentTimeMillis();
+        int dimension = store.dimension();
+        int limit = store.slotLimit();
+        int[] live = new int[limit];
+        int count = 0;
+        for (int slot = 0; slot < limit; slot++) {
+            if (store.idAt(slot) != null) {
+                live[count++] = slot;
+            }
+        }
+        if (count < minTrainingVectors || dimension == 0) {
+            return;
+        }
+
+        int requested = nlist > 0 ? Math.min(nlist, count) : Math.max(1, (int) Math.sqrt(count));
+        float[] newCentroids = trainCentroids(live, count, dimension, requested);
+        if (newCentroids.length == 0) {
+            // Every sampled vector was removed while training ran
+            return;
+        }
+        // Fewer centroids than requested when vectors were removed while they were sampled
+        int k = newCentroids.length / dimension;
+
+        int[] assignments = new int[count];
+        float[] vector = new float[dimension];
+        for (int i = 0; i < count; i++) {
+            assignments[i] = store.copyVector(live[i], vector) ? nearestCentroid(vector, newCentroids, k) : -1;
+        }
+
+        lock.writeLock().lock();
+        try {
+            centroids = newCentroids;
+            centroidCount = k;
+            lists = new int[k][];
+            listSizes = new int[k];
+            Arrays.fill(listOfSlot, -1);
+            ensureCapacity(limit);
+            for (int i = 0; i < count; i++) {
+                if (assignments[i] >= 0 && store.idAt(live[i]) != null) {
+                    file(live[i], assignments[i]);
+                }
+            }
+            // Slots added or replaced while training ran are filed with the new centroids
+            for (int i = 0; i < addedDuringTrainingCount; i++) {
+                int slot = addedDuringTraining[i];
+                unfile(slot);
+                if (store.copyVector(slot, vector)) {
+                    file(slot, nearestCentroid(vector, newCentroids, k));
+                }
+            }
+            addedDuringTrainingCount = 0;
+            trainedSize = count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Trained IVF index with {} centroids on {} vectors in {} ms",
+                k, count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Start a background training run when the index is untrained and has enough vectors,
+     * or when the store has grown by the retrain fraction since the last run
+     */
+    private void scheduleTrainingIfNeeded() {
+        int size = store.size();
+        if (size < minTrainingVectors) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (centroids != null && size < trainedSize * (1.0 + retrainGrowth)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!training.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            trainingExecutor.execute(() -> {
+                try {
+                    train();
+                } catch (RuntimeException e) {
+                    log.warn("IVF index training failed: {}", e.getMessage());
+                } finally {
+                    training.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            training.set(false);
+        }
+    }
+
+    /**
+     * Spherical k-means over a random sample of the live slots
+     *
+     * @return Up to k unit-length centroids with a stride of {@code dimension}; fewer when not
+     *         enough slots could be sampled, and none when no slot could
+     */
+    private float[] trainCentroids(int[] live, int count, int dimension, int k) {
+        int sampleCount = Math.min(count, Math.max(k, k * SAMPLE_PER_CENTROID));
+        int[] order = Arrays.copyOf(live, count);
+        float[] sample = new float[sampleCount * dimension];
+        float[] vector = new float[dimension];
+        int sampled = 0;
+        for (int i = 0; i < count && sampled < sampleCount; i++) {
+            int pick = i + random.nextInt(count - i);
+            int slot = order[pick];
+            order[pick] = order[i];
+            order[i] = slot;
+            if (store.copyVector(slot, vector)) {
+                System.arraycopy(vector, 0, sample, sampled * dimension, dimension);
+                sampled++;
+            }
+        }
+        if (sampled == 0) {
+            return new float[0];
+        }
+        k = Math.min(k, sampled);
+
+        // Seed with distinct sample points (the sample is already in random order)
+        float[] centroids = new float[k * dimension];
+        System.arraycopy(sample, 0, centroids, 0, k * dimension);
+
+        int[] assignment = new int[sampled];
+        int[] clusterSizes = new int[k];
+        float[] sums = new float[k * dimension];
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            Arrays.fill(sums, 0.0f);
+            Arrays.fill(clusterSizes, 0);
+            for (int i = 0; i < sampled; i++) {
+                System.arraycopy(sample, i * dimension, vector, 0, dimension);
+                int cluster = nearestCentroid(vector, centroids, k);
+                assignment[i] = cluster;
+                clusterSizes[cluster]++;
+                int base = cluster * dimension;
+                for (int d = 0; d < dimension; d++) {
+                    sums[base + d] += vector[d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (clusterSizes[c] == 0) {
+                    // Reseed an empty cluster with a random sample point
+                    System.arraycopy(sample, random.nextInt(sampled) * dimension, centroids, c * dimension, dimension);
+                    continue;
+                }
+                System.arraycopy(sums, c * dimension, vector, 0, dimension);
+                VectorMath.normalizeInto(vector, centroids, c * dimension);
+            }
+        }
+        return k * dimension == centroids.length ? centroids : Arrays.copyOf(centroids, k * dimension);
+    }
+
+    private static int nearestCentroid(float[] vector, float[] centroids, int count) {
+        int best = 0;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int c = 0; c < count; c++) {
+            float score = VectorMath.dot(vector, centroids, c * vector.length);
+            if (score > bestScore) {
+                bestScore = score;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Append a slot to a posting list. Must be called with the write lock held.
+     */
+    private void file(int slot, int list) {
+        if (lists[list] == null) {
+            lists[list] = new int[8];
+        } else if (listSizes[list] == lists[list].length) {
+            lists[list] = Arrays.copyOf(lists[list], listSizes[list] * 2);
+        }
+        positionOfSlot[slot] = listSizes[list];
+        listOfSlot[slot] = list;
+        lists[list][listSizes[list]++] = slot;
+    }
+
+    /**
+     * Remove a slot from its posting list, moving the last member into its place.
+     * Must be called with the write lock held.
+     */
+    private void unfile(int slot) {
+        int list = listOfSlot[slot];
+        if (list < 0) {
+            return;
+        }
+        int position = positionOfSlot[slot];
+        int last = lists[list][--listSizes[list]];
+        lists[list][position] = last;
+        positionOfSlot[last] = position;
+        listOfSlot[slot] = -1;
+    }
+
+    /**
+     * Grow the per-slot arrays to cover a slot limit. Must be called with the write lock held.
+     */
+    private void ensureCapacity(int slotLimit) {
+        if (slotLimit <= listOfSlot.length) {
+            return;
+        }
+        int capacity = Math.max(slotLimit, Math.max(64, listOfSlot.length * 2));
+        int previous = listOfSlot.length;
+        listOfSlot = Arrays.copyOf(listOfSlot, capacity);
+        positionOfSlot = Arrays.copyOf(positionOfSlot, capacity);
+        Arrays.fill(listOfSlot, previous, capacity, -1);
+    }
+}
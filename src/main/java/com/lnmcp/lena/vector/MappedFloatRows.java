@@ -0,0 +1,89 @@
+package com.lnmcp.lena.vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-stride float rows in a memory-mapped scratch file, so that full-precision vectors
+ * live in the page cache rather than on the heap. The file is mapped in segments of up to
+ * 1 GiB and is deleted when the rows are closed.
+ * <p>
+ * Not thread-safe for writes; callers must exclude readers while writing a new row.
+ */
+final class MappedFloatRows implements Closeable {
+
+    private static final long SEGMENT_BYTES = 1L << 30;
+
+    private final int dimension;
+
+    private final int rowsPerSegment;
+
+    private final FileChannel channel;
+
+    private final List<FloatBuffer> segments = new ArrayList<>();
+
+    /**
+     * @param directory Directory of the scratch file
+     * @param dimension Floats per row
+     */
+    MappedFloatRows(Path directory, int dimension) {
+        this.dimension = dimension;
+        this.rowsPerSegment = (int) Math.max(1, SEGMENT_BYTES / ((long) dimension * Float.BYTES));
+        try {
+            Files.createDirectories(directory);
+            Path file = Files.createTempFile(directory, "vectors", ".f32");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create vector row file in " + directory, e);
+        }
+    }
+
+    /**
+     * Write a row, growing the file as needed
+     */
+    void write(int row, float[] source) {
+        int segment = row / rowsPerSegment;
+        while (segments.size() <= segment) {
+            mapSegment(segments.size());
+        }
+        segments.get(segment).put((row % rowsPerSegment) * dimension, source, 0, dimension);
+    }
+
+    /**
+     * Copy a row into a buffer at an offset
+     */
+    void read(int row, float[] target, int offset) {
+        segments.get(row / rowsPerSegment).get((row % rowsPerSegment) * dimension, target, offset, dimension);
+    }
+
+    @Override
+    public void close() {
+        segments.clear();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void mapSegment(int segment) {
+        long size = (long) rowsPerSegment * dimension * Float.BYTES;
+        try {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, segment * size, size)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map vector row file segment " + segment, e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.lnmcp.lena.vector;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Exhaustive scan of a vector store split into contiguous slot ranges that are scored in
+ * parallel on a dedicated {@link ForkJoinPool}. Each range feeds its own partial result
+ * (for example a top-k selector), so workers share nothing while scoring, and partial
+ * results are merged pairwise as the fork/join tree unwinds. A finisher can convert each
+ * range's partial result once its scan is done, e.g. to resolve the range's slots to ids in
+ * one pass instead of per score.
+ */
+public final class PartitionedScan {
+
+    private final ForkJoinPool pool;
+
+    private final int partitionSlots;
+
+    /**
+     * Receives the score of one stored vector into a partial result.
+     */
+    @FunctionalInterface
+    public interface ScoreAccumulator<A> {
+        void accept(A partial, int slot, float score);
+    }
+
+    /**
+     * @param pool The pool that scores the ranges
+     * @param partitionSlots Slots scored by one task; ranges are split until they are no larger
+     */
+    public PartitionedScan(ForkJoinPool pool, int partitionSlots) {
+        this.pool = pool;
+        this.partitionSlots = Math.max(1, partitionSlots);
+    }
+
+    /**
+     * Score a query against every stored vector in parallel
+     *
+     * @param store The store to scan
+     * @param query The query vector
+     * @param factory Creates an empty partial result for one range
+     * @param accumulator Adds a score to a partial result
+     * @param combiner Merges two partial results
+     * @return The merged result of all ranges
+     */
+    public <A> A scan(VectorStore store, float[] query, Supplier<A> factory,
+                      ScoreAccumulator<A> accumulator, BinaryOperator<A> combiner) {
+        return scan(store, query, factory, accumulator, Function.identity(), combiner);
+    }
+
+    /**
+     * Score a query against every stored vector in parallel, converting each range's partial
+     * result before merging
+     *
+     * @param store The store to scan
+     * @param query The query vector
+     * @param factory Creates an empty partial result for one range
+     * @param accumulator Adds a score to a partial result
+     * @param finisher Converts the partial result of a scanned range; runs on the scan pool
+     * @param combiner Merges two converted results
+     * @return The merged result of all ranges
+     */
+    public <A, R> R scan(VectorStore store, float[] query, Supplier<A> factory, ScoreAccumulator<A> accumulator,
+                         Function<A, R> finisher, BinaryOperator<R> combiner) {
+        float[] unitQuery = VectorMath.normalize(query);
+        return pool.invoke(new RangeTask<>(store, unitQuery, 0, store.slotLimit(), factory, accumulator,
+                finisher, combiner));
+    }
+
+    private final class RangeTask<A, R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final VectorStore store;
+
+        private final float[] unitQuery;
+
+        private final int from;
+
+        private final int to;
+
+        private final Supplier<A> factory;
+
+        private final ScoreAccumulator<A> accumulator;
+
+        private final Function<A, R> finisher;
+
+        private final BinaryOperator<R> combiner;
+
+        RangeTask(VectorStore store, float[] unitQuery, int from, int to, Supplier<A> factory,
+                  ScoreAccumulator<A> accumulator, Function<A, R> finisher, BinaryOperator<R> combiner) {
+            this.store = store;
+            this.unitQuery = unitQuery;
+            this.from = from;
+            this.to = to;
+            this.factory = factory;
+            this.accumulator = accumulator;
+            this.finisher = finisher;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from <= partitionSlots) {
+                A partial = factory.get();
+                store.scanRange(unitQuery, from, to, (slot, score) -> accumulator.accept(partial, slot, score));
+                return finisher.apply(partial);
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask<A, R> left = new RangeTask<>(store, unitQuery, from, middle, factory, accumulator,
+                    finisher, combiner);
+            RangeTask<A, R> right = new RangeTask<>(store, unitQuery, middle, to, factory, accumulator,
+                    finisher, combiner);
+            left.fork();
+            R rightResult = right.compute();
+            return combiner.apply(left.join(), rightResult);
+        }
+    }
+}
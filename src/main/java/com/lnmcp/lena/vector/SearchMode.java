@@ -0,0 +1,41 @@
+package com.lnmcp.lena.vector;
+
+/**
+ * Strategies for finding the stored vectors most similar to a query.
+ */
+public enum SearchMode {
+
+    /**
+     * Score the query against every stored vector
+     */
+    EXACT,
+
+    /**
+     * Approximate search over a hierarchical navigable small world graph
+     */
+    HNSW,
+
+    /**
+     * Approximate search over the posting lists of the nearest k-means centroids
+     */
+    IVF,
+
+    /**
+     * Hamming-distance prefilter over sign-bit fingerprints, re-ranked by exact cosine similarity
+     */
+    BINARY;
+
+    /**
+     * Parse a configured mode name, ignoring case
+     *
+     * @param value The configured value
+     * @return The matching mode, or EXACT if the value is empty
+     * @throws IllegalArgumentException If the value does not name a mode
+     */
+    public static SearchMode fromString(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return EXACT;
+        }
+        return SearchMode.valueOf(value.trim().toUpperCase());
+    }
+}
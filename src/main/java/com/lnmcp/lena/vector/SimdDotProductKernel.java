@@ -0,0 +1,138 @@
+package com.lnmcp.lena.vector;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Dot product using the JDK Vector API, processing as many lanes per instruction as the
+ * CPU supports. Only loaded when the jdk.incubator.vector module is enabled.
+ * <p>
+ * Int8 codes are loaded into a byte vector with one lane per float or int lane and widened
+ * in registers. CPUs whose preferred vectors have fewer than 8 lanes use the scalar loop for
+ * int8 codes.
+ */
+final class SimdDotProductKernel implements DotProductKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Byte> BYTE_SPECIES = byteSpecies(SPECIES.length());
+
+    private final ScalarDotProductKernel scalar = new ScalarDotProductKernel();
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromArray(SPECIES, b, bOffset + i);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (BYTE_SPECIES == null) {
+            return scalar.dot(a, aOffset, b, bOffset, length);
+        }
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = (FloatVector) ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i)
+                    .convertShape(VectorOperators.B2F, SPECIES, 0);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        if (BYTE_SPECIES == null || INT_SPECIES.length() != SPECIES.length()) {
+            return scalar.dot(a, aOffset, b, bOffset, length);
+        }
+        IntVector sum = IntVector.zero(INT_SPECIES);
+        int i = 0;
+        int bound = INT_SPECIES.loopBound(length);
+        for (; i < bound; i += INT_SPECIES.length()) {
+            IntVector va = (IntVector) ByteVector.fromArray(BYTE_SPECIES, a, aOffset + i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            IntVector vb = (IntVector) ByteVector.fromArray(BYTE_SPECIES, b, bOffset + i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            sum = va.mul(vb).add(sum);
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(float[] a, int aOffset, ByteBuffer b, int bByteOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromArray(SPECIES, a, aOffset + i);
+            FloatVector vb = FloatVector.fromByteBuffer(SPECIES, b, bByteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        if (i < length) {
+            result += scalar.dot(a, aOffset + i, b, bByteOffset + i * Float.BYTES, length - i);
+        }
+        return result;
+    }
+
+    @Override
+    public float dot(ByteBuffer a, int aByteOffset, ByteBuffer b, int bByteOffset, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        int bound = SPECIES.loopBound(length);
+        for (; i < bound; i += SPECIES.length()) {
+            FloatVector va = FloatVector.fromByteBuffer(SPECIES, a, aByteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            FloatVector vb = FloatVector.fromByteBuffer(SPECIES, b, bByteOffset + i * Float.BYTES,
+                    ByteOrder.LITTLE_ENDIAN);
+            sum = va.fma(vb, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        if (i < length) {
+            result += scalar.dot(a, aByteOffset + i * Float.BYTES, b, bByteOffset + i * Float.BYTES, length - i);
+        }
+        return result;
+    }
+
+    /**
+     * Byte species with the given number of lanes, or null if no vector shape is that small
+     */
+    private static VectorSpecies<Byte> byteSpecies(int lanes) {
+        int bits = lanes * Byte.SIZE;
+        if (bits < 64) {
+            return null;
+        }
+        return VectorSpecies.of(byte.class, VectorShape.forBitSize(bits));
+    }
+}
@@ -0,0 +1,66 @@
+package com.lnmcp.lena.vector;
+
+import java.util.Arrays;
+
+/**
+ * Append-only list of (slot, score) pairs in primitive arrays, used to collect the scores of
+ * a scan without resolving slots to ids while the scan holds the store's lock. Sized up front
+ * to the expected number of slots, appending does not allocate. Not thread-safe.
+ */
+public final class SlotScores {
+
+    private int[] slots;
+
+    private float[] scores;
+
+    private int size;
+
+    /**
+     * @param expectedSize Number of scores expected, e.g. the slots in a scan partition
+     */
+    public SlotScores(int expectedSize) {
+        int capacity = Math.max(16, expectedSize);
+        this.slots = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    /**
+     * Append the score of a slot
+     */
+    public void add(int slot, float score) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        slots[size] = slot;
+        scores[size] = score;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Slot of the score at an index
+     */
+    public int slot(int index) {
+        return slots[index];
+    }
+
+    /**
+     * Score at an index
+     */
+    public float score(int index) {
+        return scores[index];
+    }
+
+    /**
+     * Resolve every recorded slot to its id in one pass over the store
+     *
+     * @return The id of each recorded slot, by index; null where the slot was freed since the scan
+     */
+    public String[] resolveIds(VectorStore store) {
+        return store.idsAt(slots, size);
+    }
+}
@@ -0,0 +1,39 @@
+package com.lnmcp.lena.vector;
+
+/**
+ * Search index over the slots of a {@link VectorStore}.
+ * Implementations read vectors from the store and only keep their own search structures.
+ */
+public interface VectorIndex {
+
+    /**
+     * Index the vector currently held in a slot.
+     * Calling this again for a slot whose vector was replaced re-indexes it.
+     *
+     * @param slot The store slot to index
+     */
+    void add(int slot);
+
+    /**
+     * Remove a slot from search results
+     *
+     * @param slot The store slot to remove
+     */
+    void remove(int slot);
+
+    /**
+     * Find the slots most similar to a query
+     *
+     * @param query The query vector
+     * @param k The maximum number of results
+     * @param slots Receives the result slots, most similar first; must hold at least k entries
+     * @param scores Receives the cosine similarity of each result slot
+     * @return The number of results written
+     */
+    int search(float[] query, int k, int[] slots, float[] scores);
+
+    /**
+     * Remove every slot from the index
+     */
+    void clear();
+}
@@ -0,0 +1,188 @@
+package com.lnmcp.lena.vector;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Primitive vector arithmetic used by the embedding store and indexes.
+ * Dot products run on the JDK Vector API when the jdk.incubator.vector module is enabled
+ * (start the JVM with {@code --add-modules jdk.incubator.vector}) and on a scalar loop otherwise.
+ */
+public final class VectorMath {
+
+    private static final DotProductKernel KERNEL = createKernel();
+
+    private VectorMath() {
+    }
+
+    /**
+     * Check whether dot products use the JDK Vector API
+     */
+    public static boolean isSimdEnabled() {
+        return !(KERNEL instanceof ScalarDotProductKernel);
+    }
+
+    /**
+     * Dot product of a query with a row stored in a slab
+     *
+     * @param query The query vector
+     * @param data The slab holding the row
+     * @param offset Offset of the first component of the row in the slab
+     * @return The dot product
+     */
+    public static float dot(float[] query, float[] data, int offset) {
+        return KERNEL.dot(query, 0, data, offset, query.length);
+    }
+
+    /**
+     * Dot product of two rows of {@code length} components
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Dot product of two vectors of the same length
+     */
+    public static float dot(float[] a, float[] b) {
+        return dot(a, b, 0);
+    }
+
+    /**
+     * Dot product of a float query with a row of int8 codes stored in a slab
+     */
+    public static float dot(float[] query, byte[] codes, int offset) {
+        return KERNEL.dot(query, 0, codes, offset, query.length);
+    }
+
+    /**
+     * Integer dot product of two rows of {@code length} int8 codes
+     */
+    public static int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Dot product of a query with a row of little-endian floats in a buffer, e.g. a mapped file
+     *
+     * @param query The query vector
+     * @param buffer The buffer holding the row
+     * @param byteOffset Byte offset of the first component of the row in the buffer
+     */
+    public static float dot(float[] query, ByteBuffer buffer, int byteOffset) {
+        return KERNEL.dot(query, 0, buffer, byteOffset, query.length);
+    }
+
+    /**
+     * Dot product of two rows of {@code length} little-endian floats in buffers
+     */
+    public static float dot(ByteBuffer a, int aByteOffset, ByteBuffer b, int bByteOffset, int length) {
+        return KERNEL.dot(a, aByteOffset, b, bByteOffset, length);
+    }
+
+    /**
+     * Dot product of a row in a slab with a row of little-endian floats in a buffer
+     */
+    public static float dot(float[] a, int aOffset, ByteBuffer b, int bByteOffset, int length) {
+        return KERNEL.dot(a, aOffset, b, bByteOffset, length);
+    }
+
+    /**
+     * Sum of the components of a vector
+     */
+    public static float sum(float[] vector) {
+        float sum = 0.0f;
+        for (float value : vector) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Euclidean norm of a vector
+     */
+    public static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    /**
+     * Copy a vector scaled to unit length. A zero vector is copied unchanged.
+     */
+    public static float[] normalize(float[] vector) {
+        float[] unit = new float[vector.length];
+        normalizeInto(vector, unit, 0);
+        return unit;
+    }
+
+    /**
+     * Write a vector scaled to unit length into a slab. A zero vector is written unchanged.
+     *
+     * @param vector The source vector
+     * @param target The slab to write into
+     * @param offset Offset of the first component in the slab
+     */
+    public static void normalizeInto(float[] vector, float[] target, int offset) {
+        float norm = norm(vector);
+        float scale = norm > 0.0f ? 1.0f / norm : 1.0f;
+        for (int i = 0; i < vector.length; i++) {
+            target[offset + i] = vector[i] * scale;
+        }
+    }
+
+    /**
+     * Cosine similarity between two vectors, or 0 if they are empty, of different
+     * length or one of them has zero norm
+     */
+    public static float cosine(float[] a, float[] b) {
+        if (a == null || b == null || a.length == 0 || a.length != b.length) {
+            return 0.0f;
+        }
+        float normA = norm(a);
+        float normB = norm(b);
+        if (normA <= 0.0f || normB <= 0.0f) {
+            return 0.0f;
+        }
+        return dot(a, b) / (normA * normB);
+    }
+
+    /**
+     * Copy a boxed embedding into a primitive array
+     */
+    public static float[] toArray(List<Float> embedding) {
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = embedding.get(i);
+        }
+        return vector;
+    }
+
+    /**
+     * Copy a primitive vector into a boxed list
+     */
+    public static List<Float> toList(float[] vector) {
+        List<Float> embedding = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            embedding.add(value);
+        }
+        return embedding;
+    }
+
+    /**
+     * Use the Vector API kernel when its incubator module is present in the boot layer.
+     * The kernel class is only loaded after the check so that a JVM without the module
+     * never resolves jdk.incubator.vector types.
+     */
+    private static DotProductKernel createKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (DotProductKernel) Class.forName("com.lnmcp.lena.vector.SimdDotProductKernel")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Fall back to the scalar loop below
+            }
+        }
+        return new ScalarDotProductKernel();
+    }
+}
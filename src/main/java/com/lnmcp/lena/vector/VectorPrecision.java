@@ -0,0 +1,32 @@
+package com.lnmcp.lena.vector;
+
+/**
+ * How the vector store keeps the vectors it scores during a scan.
+ */
+public enum VectorPrecision {
+
+    /**
+     * Full-precision float32 components on the heap
+     */
+    FLOAT32,
+
+    /**
+     * Per-vector int8 codes with a scale and offset on the heap; full-precision rows are kept
+     * in a memory-mapped file and only read to re-rank the best candidates
+     */
+    INT8;
+
+    /**
+     * Parse a configured precision name, ignoring case
+     *
+     * @param value The configured value
+     * @return The matching precision, or FLOAT32 if the value is empty or "none"
+     * @throws IllegalArgumentException If the value does not name a precision
+     */
+    public static VectorPrecision fromString(String value) {
+        if (value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("none")) {
+            return FLOAT32;
+        }
+        return VectorPrecision.valueOf(value.trim().toUpperCase());
+    }
+}
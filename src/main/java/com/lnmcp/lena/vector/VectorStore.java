@@ -0,0 +1,731 @@
+package com.lnmcp.lena.vector;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory store for embedding vectors.
+ * All vectors share one contiguous primitive float[] slab with a fixed stride equal to
+ * the embedding dimension. Document ids are mapped to integer slots, and freed slots are
+ * reused by later inserts. The dimension is fixed by the first vector stored.
+ * <p>
+ * Vectors are normalized to unit length when stored, so cosine similarity against a
+ * normalized query is a plain dot product.
+ * <p>
+ * With {@link VectorPrecision#INT8} the slab holds one int8 code per component instead,
+ * with a per-vector scale and offset ({@code value = offset + scale * code}), cutting heap
+ * use about 4x. Scans quantize the query once and score with integer dot products; the
+ * full-precision vectors are kept in a memory-mapped file for {@link #exactScore} re-ranking,
+ * {@link #get} and {@link #snapshot}.
+ * <p>
+ * A float32 store can also {@link #load} an {@link EmbeddingFile}: its rows become the first
+ * slots and are scored in place from the file mapping, so nothing is copied at startup.
+ */
+public class VectorStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Largest array length the JVM reliably allocates
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> slotsById = new HashMap<>();
+
+    private String[] ids = new String[0];
+
+    private float[] data = new float[0];
+
+    private final VectorPrecision precision;
+
+    private final Path rowDirectory;
+
+    // INT8 precision: codes slab, per-vector quantization parameters and full-precision rows
+    private byte[] codes = new byte[0];
+
+    private float[] scales = new float[0];
+
+    private float[] offsets = new float[0];
+
+    private int[] codeSums = new int[0];
+
+    private MappedFloatRows rows;
+
+    // Embedding file whose mapped rows hold slots 0 to mappedSlotCount - 1; later slots live in the slab
+    private EmbeddingFile.Contents mappedFile;
+
+    private int mappedSlotCount;
+
+    private int[] freeSlots = new int[0];
+
+    private int freeCount;
+
+    /**
+     * Number of slots that have ever been handed out (live and free)
+     */
+    private int slotLimit;
+
+    private int dimension;
+
+    /**
+     * Create a store keeping full-precision vectors on the heap
+     */
+    public VectorStore() {
+        this(VectorPrecision.FLOAT32, null);
+    }
+
+    /**
+     * @param precision How scanned vectors are kept
+     * @param rowDirectory Directory of the full-precision row file used with INT8 precision,
+     *                     or null for the system temporary directory
+     */
+    public VectorStore(VectorPrecision precision, Path rowDirectory) {
+        this.precision = precision;
+        this.rowDirectory = rowDirectory != null ? rowDirectory : Path.of(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Callback receiving the score of one stored vector.
+     */
+    @FunctionalInterface
+    public interface SlotScoreConsumer {
+        void accept(int slot, float score);
+    }
+
+    /**
+     * Store a vector, replacing any vector previously stored under the same id
+     *
+     * @param id The document identifier
+     * @param vector The embedding vector
+     * @return The slot the vector was written to
+     * @throws IllegalArgumentException If the vector dimension does not match the store
+     * @throws IllegalStateException If the store is full, i.e. its heap slab cannot grow further
+     */
+    public int put(String id, float[] vector) {
+        if (vector == null || vector.length == 0) {
+            throw new IllegalArgumentException("Cannot store an empty vector for " + id);
+        }
+        lock.writeLock().lock();
+        try {
+            if (dimension == 0) {
+                dimension = vector.length;
+            } else if (vector.length != dimension) {
+                throw new IllegalArgumentException("Vector dimension " + vector.length
+                        + " does not match store dimension " + dimension + " for " + id);
+            }
+
+            Integer existing = slotsById.get(id);
+            if (existing != null && existing < mappedSlotCount) {
+                // Mapped rows are read-only; the id moves to a slab slot and its mapped slot is retired
+                ids[existing] = null;
+                existing = null;
+            }
+            int slot = existing != null ? existing : allocateSlot();
+            if (precision == VectorPrecision.INT8) {
+                float[] unit = VectorMath.normalize(vector);
+                rows().write(slot, unit);
+                quantizeInto(unit, slot);
+            } else {
+                VectorMath.normalizeInto(vector, data, slabOffset(slot));
+            }
+            ids[slot] = id;
+            slotsById.put(id, slot);
+            return slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Serve the vectors of an embedding file from its mapping instead of copying them to the heap.
+     * The file's rows become slots 0 to {@code contents.size() - 1} and are scored in place.
+     * They are read-only: storing a new vector for one of their ids moves the id to a slab slot,
+     * and their slots are not reused once removed.
+     *
+     * @param contents An embedding file written from a store snapshot, so its vectors are normalized
+     * @throws IllegalStateException If the store is not empty or does not keep float32 vectors
+     */
+    public void load(EmbeddingFile.Contents contents) {
+        lock.writeLock().lock();
+        try {
+            if (precision != VectorPrecision.FLOAT32 || slotLimit != 0) {
+                throw new IllegalStateException("Embedding files can only be loaded into an empty float32 store");
+            }
+            int count = contents.size();
+            if (count == 0) {
+                return;
+            }
+            dimension = contents.getDimension();
+            ids = new String[count];
+            for (int slot = 0; slot < count; slot++) {
+                String id = contents.getId(slot);
+                Integer previous = slotsById.put(id, slot);
+                if (previous != null) {
+                    ids[previous] = null;
+                }
+                ids[slot] = id;
+            }
+            data = new float[0];
+            mappedFile = contents;
+            mappedSlotCount = count;
+            slotLimit = count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of slots served from a loaded embedding file's mapping
+     */
+    public int mappedSlots() {
+        lock.readLock().lock();
+        try {
+            return mappedSlotCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the vector stored under an id
+     *
+     * @return true if a vector was removed
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotsById.remove(id);
+            if (slot == null) {
+                return false;
+            }
+            ids[slot] = null;
+            if (slot < mappedSlotCount) {
+                // Mapped slots are never reused
+                return true;
+            }
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, Math.max(INITIAL_CAPACITY, freeSlots.length * 2));
+            }
+            freeSlots[freeCount++] = slot;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the slot of an id, or -1 if the id is not stored
+     */
+    public int slotOf(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsById.get(id);
+            return slot != null ? slot : -1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the id stored in a slot, or null if the slot is free
+     */
+    public String idAt(int slot) {
+        lock.readLock().lock();
+        try {
+            return slot >= 0 && slot < slotLimit ? ids[slot] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the ids stored in a list of slots under a single lock acquisition
+     *
+     * @param slots The slots to resolve
+     * @param count Number of leading entries of {@code slots} to resolve
+     * @return The id of each slot, or null where the slot is free
+     */
+    public String[] idsAt(int[] slots, int count) {
+        String[] result = new String[count];
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < count; i++) {
+                int slot = slots[i];
+                result[i] = slot >= 0 && slot < slotLimit ? ids[slot] : null;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether an id is stored
+     */
+    public boolean contains(String id) {
+        return slotOf(id) >= 0;
+    }
+
+    /**
+     * Get a copy of the normalized vector stored under an id, or null if it is not stored
+     */
+    public float[] get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slotsById.get(id);
+            if (slot == null) {
+                return null;
+            }
+            float[] vector = new float[dimension];
+            readUnlocked(slot, vector, 0);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cosine similarity between a normalized query and the vector in a slot.
+     * Does not allocate. With INT8 precision the score is computed from the int8 codes.
+     *
+     * @param slot The slot to score
+     * @param unitQuery The query vector, normalized with {@link VectorMath#normalize(float[])}
+     * @return The cosine similarity, or 0 if the slot is free
+     */
+    public float score(int slot, float[] unitQuery) {
+        lock.readLock().lock();
+        try {
+            return scoreUnlocked(slot, unitQuery);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cosine similarity between a normalized query and the full-precision vector in a slot,
+     * used to re-rank candidates found with {@link #scan} or {@link #score}
+     *
+     * @param slot The slot to score
+     * @param unitQuery The query vector, normalized with {@link VectorMath#normalize(float[])}
+     * @return The cosine similarity, or 0 if the slot is free
+     */
+    public float exactScore(int slot, float[] unitQuery) {
+        lock.readLock().lock();
+        try {
+            if (precision != VectorPrecision.INT8) {
+                return scoreUnlocked(slot, unitQuery);
+            }
+            if (!isLiveUnlocked(slot) || unitQuery.length != dimension) {
+                return 0.0f;
+            }
+            float[] vector = new float[dimension];
+            rows.read(slot, vector, 0);
+            return VectorMath.dot(unitQuery, vector);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Cosine similarity between the vectors in two slots, or 0 if either slot is free
+     */
+    public float similarity(int slot, int otherSlot) {
+        lock.readLock().lock();
+        try {
+            if (!isLiveUnlocked(slot) || !isLiveUnlocked(otherSlot)) {
+                return 0.0f;
+            }
+            if (precision == VectorPrecision.INT8) {
+                // Expand (o1 + s1 * c1) . (o2 + s2 * c2) so only the code product is per component
+                int codeDot = VectorMath.dot(codes, slot * dimension, codes, otherSlot * dimension, dimension);
+                return dimension * offsets[slot] * offsets[otherSlot]
+                        + offsets[slot] * scales[otherSlot] * codeSums[otherSlot]
+                        + offsets[otherSlot] * scales[slot] * codeSums[slot]
+                        + scales[slot] * scales[otherSlot] * codeDot;
+            }
+            if (slot < mappedSlotCount && otherSlot < mappedSlotCount) {
+                return VectorMath.dot(mappedFile.segment(slot), mappedFile.byteOffset(slot),
+                        mappedFile.segment(otherSlot), mappedFile.byteOffset(otherSlot), dimension);
+            }
+            if (slot < mappedSlotCount || otherSlot < mappedSlotCount) {
+                int mapped = Math.min(slot, otherSlot);
+                int inSlab = Math.max(slot, otherSlot);
+                return VectorMath.dot(data, slabOffset(inSlab), mappedFile.segment(mapped),
+                        mappedFile.byteOffset(mapped), dimension);
+            }
+            return VectorMath.dot(data, slabOffset(slot), data, slabOffset(otherSlot), dimension);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy the normalized vector in a slot into a caller-supplied buffer
+     *
+     * @param slot The slot to read
+     * @param target Buffer of at least {@link #dimension()} entries
+     * @return true if the slot holds a vector and it was copied
+     */
+    public boolean copyVector(int slot, float[] target) {
+        lock.readLock().lock();
+        try {
+            if (!isLiveUnlocked(slot) || target.length < dimension) {
+                return false;
+            }
+            readUnlocked(slot, target, 0);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Score a query against every stored vector.
+     * The query is normalized once; scoring then runs under the read lock as one dot
+     * product per vector and does not allocate per vector. With INT8 precision the query
+     * is also quantized once and each score is an integer dot product, so scores are
+     * approximate and the best candidates should be re-ranked with {@link #exactScore}.
+     *
+     * @param query The query vector
+     * @param consumer Receives the slot and cosine similarity of each stored vector
+     */
+    public void scan(float[] query, SlotScoreConsumer consumer) {
+        scanRange(VectorMath.normalize(query), 0, Integer.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Score a normalized query against the stored vectors in a range of slots, in slot order.
+     * Ranges can be scanned concurrently; see {@link PartitionedScan}.
+     *
+     * @param unitQuery The query vector, normalized with {@link VectorMath#normalize(float[])}
+     * @param fromSlot First slot of the range (inclusive)
+     * @param toSlot End of the range (exclusive); clamped to {@link #slotLimit()}
+     * @param consumer Receives the slot and cosine similarity of each stored vector in the range
+     */
+    public void scanRange(float[] unitQuery, int fromSlot, int toSlot, SlotScoreConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            if (unitQuery.length != dimension) {
+                return;
+            }
+            int end = Math.min(toSlot, slotLimit);
+            if (precision == VectorPrecision.INT8) {
+                scanQuantized(unitQuery, fromSlot, end, consumer);
+                return;
+            }
+            for (int slot = fromSlot; slot < end; slot++) {
+                if (ids[slot] != null) {
+                    consumer.accept(slot, dotUnlocked(unitQuery, slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy every stored vector into a compact snapshot, in slot order
+     */
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            int count = slotsById.size();
+            String[] snapshotIds = new String[count];
+            float[] vectors = new float[count * dimension];
+            int index = 0;
+            for (int slot = 0; slot < slotLimit; slot++) {
+                if (ids[slot] != null) {
+                    snapshotIds[index] = ids[slot];
+                    readUnlocked(slot, vectors, index * dimension);
+                    index++;
+                }
+            }
+            return new Snapshot(dimension, snapshotIds, vectors);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of stored vectors
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether the store is empty
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Dimension of the stored vectors, or 0 if nothing has been stored yet
+     */
+    public int dimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Precision of the vectors scored by {@link #scan} and {@link #score}
+     */
+    public VectorPrecision precision() {
+        return precision;
+    }
+
+    /**
+     * Upper bound (exclusive) of the slots in use
+     */
+    public int slotLimit() {
+        lock.readLock().lock();
+        try {
+            return slotLimit;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all vectors and release the slab
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            slotsById.clear();
+            ids = new String[0];
+            data = new float[0];
+            codes = new byte[0];
+            scales = new float[0];
+            offsets = new float[0];
+            codeSums = new int[0];
+            freeSlots = new int[0];
+            freeCount = 0;
+            slotLimit = 0;
+            dimension = 0;
+            mappedFile = null;
+            mappedSlotCount = 0;
+            closeRows();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all vectors and delete the full-precision row file, if any
+     */
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Point-in-time copy of the store: ids and their normalized vectors laid out with a
+     * fixed stride of {@code dimension} floats.
+     */
+    public static final class Snapshot {
+
+        private final int dimension;
+
+        private final String[] ids;
+
+        private final float[] vectors;
+
+        Snapshot(int dimension, String[] ids, float[] vectors) {
+            this.dimension = dimension;
+            this.ids = ids;
+            this.vectors = vectors;
+        }
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        public String[] getIds() {
+            return ids;
+        }
+
+        public float[] getVectors() {
+            return vectors;
+        }
+
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    private boolean isLiveUnlocked(int slot) {
+        return slot >= 0 && slot < slotLimit && ids[slot] != null;
+    }
+
+    private float scoreUnlocked(int slot, float[] unitQuery) {
+        if (!isLiveUnlocked(slot) || unitQuery.length != dimension) {
+            return 0.0f;
+        }
+        if (precision == VectorPrecision.INT8) {
+            return offsets[slot] * VectorMath.sum(unitQuery)
+                    + scales[slot] * VectorMath.dot(unitQuery, codes, slot * dimension);
+        }
+        return dotUnlocked(unitQuery, slot);
+    }
+
+    /**
+     * Dot product of a query with the full-precision vector in a live float32 slot.
+     * Must be called with the read lock held.
+     */
+    private float dotUnlocked(float[] unitQuery, int slot) {
+        if (slot < mappedSlotCount) {
+            return VectorMath.dot(unitQuery, mappedFile.segment(slot), mappedFile.byteOffset(slot));
+        }
+        return VectorMath.dot(unitQuery, data, slabOffset(slot));
+    }
+
+    /**
+     * Copy the full-precision vector in a live slot into a buffer at an offset.
+     * Must be called with the read lock held.
+     */
+    private void readUnlocked(int slot, float[] target, int offset) {
+        if (precision == VectorPrecision.INT8) {
+            rows.read(slot, target, offset);
+        } else if (slot < mappedSlotCount) {
+            mappedFile.readVector(slot, target, offset);
+        } else {
+            System.arraycopy(data, slabOffset(slot), target, offset, dimension);
+        }
+    }
+
+    /**
+     * Offset of a float32 slot's first component in the slab; slots below the mapped
+     * rows take no space in it
+     */
+    private int slabOffset(int slot) {
+        return (slot - mappedSlotCount) * dimension;
+    }
+
+    /**
+     * Score a normalized query against the int8 vectors in a range of slots.
+     * The query is quantized symmetrically ({@code q = queryScale * qc}), so
+     * {@code q . v = offset * sum(q) + scale * queryScale * (qc . c)}.
+     * Must be called with the read lock held.
+     */
+    private void scanQuantized(float[] unitQuery, int fromSlot, int toSlot, SlotScoreConsumer consumer) {
+        float maxAbs = 0.0f;
+        for (float value : unitQuery) {
+            maxAbs = Math.max(maxAbs, Math.abs(value));
+        }
+        float queryScale = maxAbs > 0.0f ? maxAbs / 127.0f : 1.0f;
+        byte[] queryCodes = new byte[dimension];
+        for (int i = 0; i < dimension; i++) {
+            queryCodes[i] = (byte) Math.round(unitQuery[i] / queryScale);
+        }
+        float querySum = VectorMath.sum(unitQuery);
+
+        for (int slot = fromSlot; slot < toSlot; slot++) {
+            if (ids[slot] != null) {
+                int codeDot = VectorMath.dot(queryCodes, 0, codes, slot * dimension, dimension);
+                consumer.accept(slot, offsets[slot] * querySum + scales[slot] * queryScale * codeDot);
+            }
+        }
+    }
+
+    /**
+     * Quantize a normalized vector into the int8 slab, mapping its value range onto
+     * [-128, 127]. Must be called with the write lock held.
+     */
+    private void quantizeInto(float[] unit, int slot) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float value : unit) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        float scale = (max - min) / 255.0f;
+        float offset = scale > 0.0f ? min + 128.0f * scale : min;
+
+        int base = slot * dimension;
+        int sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            int code = scale > 0.0f ? Math.round((unit[i] - offset) / scale) : 0;
+            code = Math.max(-128, Math.min(127, code));
+            codes[base + i] = (byte) code;
+            sum += code;
+        }
+        scales[slot] = scale;
+        offsets[slot] = offset;
+        codeSums[slot] = sum;
+    }
+
+    /**
+     * Full-precision row file, created with the first INT8 vector.
+     * Must be called with the write lock held.
+     */
+    private MappedFloatRows rows() {
+        if (rows == null) {
+            rows = new MappedFloatRows(rowDirectory, dimension);
+        }
+        return rows;
+    }
+
+    private void closeRows() {
+        if (rows != null) {
+            rows.close();
+            rows = null;
+        }
+    }
+
+    /**
+     * Hand out a free slot, growing the slab when every slot is in use.
+     * Must be called with the write lock held.
+     */
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        // Vector slabs are indexed as slot * dimension, so they hold fewer slots than the id table
+        int maxSlabSlots = MAX_ARRAY_LENGTH / dimension;
+        if (slotLimit == ids.length) {
+            int capacity = grownCapacity(ids.length,
+                    precision == VectorPrecision.INT8 ? maxSlabSlots : MAX_ARRAY_LENGTH);
+            ids = Arrays.copyOf(ids, capacity);
+            if (precision == VectorPrecision.INT8) {
+                codes = Arrays.copyOf(codes, Math.multiplyExact(capacity, dimension));
+                scales = Arrays.copyOf(scales, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                codeSums = Arrays.copyOf(codeSums, capacity);
+            }
+        }
+        if (precision == VectorPrecision.FLOAT32 && slabOffset(slotLimit) == data.length) {
+            // The slab only holds slots after the mapped rows, so it grows on its own
+            int slabCapacity = grownCapacity(data.length / dimension, maxSlabSlots);
+            data = Arrays.copyOf(data, Math.multiplyExact(slabCapacity, dimension));
+        }
+        return slotLimit++;
+    }
+
+    /**
+     * Capacity after growing a full array: doubled, but no larger than the limit
+     *
+     * @param capacity The current capacity, all in use
+     * @param limit The most slots the array may hold
+     * @throws IllegalStateException If the array already holds the limit
+     */
+    static int grownCapacity(int capacity, int limit) {
+        if (capacity >= limit) {
+            throw new IllegalStateException("Vector store is full: " + capacity
+                    + " vectors is the most one heap array holds at this dimension");
+        }
+        return (int) Math.min(limit, Math.max(INITIAL_CAPACITY, capacity * 2L));
+    }
+}
@@ -0,0 +1,94 @@
+package com.lnmcp.lena.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BkTreeTest {
+
+    private static int distance(String a, String b) {
+        int[] previous = new int[a.length() + 1];
+        int[] current = new int[a.length() + 1];
+        return BkTree.distance(a, b, previous, current);
+    }
+
+    private static String randomWord(Random random) {
+        int length = 3 + random.nextInt(6);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(6)));
+        }
+        return word.toString();
+    }
+
+    @Test
+    public void testDistance() {
+        assertEquals(0, distance("공고", "공고"));
+        assertEquals(1, distance("schedule", "shedule"));
+        assertEquals(1, distance("모집", "모집은"));
+        assertEquals(2, distance("housing", "hoisng"));
+        assertEquals(3, distance("kitten", "sitting"));
+        assertEquals(4, distance("", "word"));
+    }
+
+    @Test
+    public void testSearchMatchesBruteForce() {
+        Random random = new Random(11);
+        BkTree tree = new BkTree();
+        Set<String> terms = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            String word = randomWord(random);
+            assertEquals(terms.add(word), tree.add(word));
+        }
+        assertEquals(terms.size(), tree.size());
+
+        for (int q = 0; q < 50; q++) {
+            String query = randomWord(random);
+            for (int maxDistance = 1; maxDistance <= 2; maxDistance++) {
+                List<String> expected = new ArrayList<>();
+                for (String term : terms) {
+                    if (distance(query, term) <= maxDistance) {
+                        expected.add(term);
+                    }
+                }
+                List<String> actual = tree.search(query, maxDistance);
+                Collections.sort(expected);
+                Collections.sort(actual);
+                assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveAndRebuild() {
+        Random random = new Random(5);
+        BkTree tree = new BkTree();
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String word = randomWord(random) + i;
+            tree.add(word);
+            terms.add(word);
+        }
+
+        // Removing most terms triggers a rebuild from the live ones
+        for (int i = 0; i < 4000; i++) {
+            assertTrue(tree.remove(terms.get(i)));
+        }
+        assertFalse(tree.remove(terms.get(0)));
+        assertEquals(1000, tree.size());
+        assertTrue(tree.search(terms.get(0), 0).isEmpty());
+        assertEquals(Collections.singletonList(terms.get(4500)), tree.search(terms.get(4500), 0));
+
+        // A removed term can be added back
+        assertTrue(tree.add(terms.get(0)));
+        assertEquals(Collections.singletonList(terms.get(0)), tree.search(terms.get(0), 0));
+        assertEquals(1001, tree.size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.lnmcp.lena.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Bm25IndexTest {
+
+    private static Bm25Index sampleIndex() {
+        Bm25Index index = new Bm25Index();
+        index.add("housing.pdf", "입주자 모집 공고: housing application schedule and housing rules");
+        index.add("budget.txt", "annual budget report with spending by department");
+        index.add("rules.txt", "office rules and schedule for the annual review");
+        return index;
+    }
+
+    @Test
+    public void testRanksByTermFrequencyAndRarity() {
+        Bm25Index index = sampleIndex();
+
+        List<SearchResult> results = index.search(Arrays.asList("housing", "schedule"), 5);
+        assertEquals(2, results.size());
+        assertEquals("housing.pdf", results.get(0).getId());
+        assertEquals("rules.txt", results.get(1).getId());
+        assertTrue(results.get(0).getScore() > results.get(1).getScore());
+
+        // Hangul terms are indexed like Latin ones
+        assertEquals("housing.pdf", index.search(Collections.singletonList("입주자"), 5).get(0).getId());
+        assertTrue(index.search(Collections.singletonList("missing"), 5).isEmpty());
+    }
+
+    @Test
+    public void testReplaceAndRemoveUpdatePostings() {
+        Bm25Index index = sampleIndex();
+        int terms = index.termCount();
+
+        index.add("budget.txt", "quarterly forecast");
+        assertEquals(3, index.size());
+        assertTrue(index.search(Collections.singletonList("spending"), 5).isEmpty());
+        assertEquals("budget.txt", index.search(Collections.singletonList("forecast"), 5).get(0).getId());
+
+        assertTrue(index.remove("budget.txt"));
+        assertFalse(index.remove("budget.txt"));
+        assertFalse(index.contains("budget.txt"));
+        assertTrue(index.search(Collections.singletonList("forecast"), 5).isEmpty());
+        assertTrue(index.termCount() < terms);
+
+        // Freed slots are reused
+        index.add("new.txt", "annual forecast");
+        assertEquals(3, index.size());
+        assertEquals("new.txt", index.search(Collections.singletonList("forecast"), 5).get(0).getId());
+    }
+
+    @Test
+    public void testAppendedSectionsScoreLikeTheWholeText() {
+        Bm25Index whole = sampleIndex();
+        whole.add("report.pdf", "housing schedule for spring\fhousing rules and the annual forecast");
+
+        Bm25Index sections = sampleIndex();
+        sections.append("report.pdf", "housing schedule for spring\f");
+        sections.append("report.pdf", "housing rules and the annual forecast");
+        assertEquals(whole.size(), sections.size());
+        assertEquals(whole.termCount(), sections.termCount());
+
+        List<String> query = Arrays.asList("housing", "forecast");
+        List<SearchResult> expected = whole.search(query, 5);
+        List<SearchResult> actual = sections.search(query, 5);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-6f);
+        }
+
+        // Removing a document built from sections deletes the postings of every section
+        assertTrue(sections.remove("report.pdf"));
+        assertTrue(sections.search(Collections.singletonList("forecast"), 5).isEmpty());
+        assertTrue(sections.search(Collections.singletonList("spring"), 5).isEmpty());
+    }
+
+    @Test
+    public void testWeightsAndFilter() {
+        Bm25Index index = sampleIndex();
+
+        Map<String, Float> weights = new HashMap<>();
+        weights.put("annual", 1.0f);
+        List<SearchResult> all = index.search(weights, 5, id -> true);
+        assertEquals(2, all.size());
+
+        List<SearchResult> filtered = index.search(weights, 5, id -> !id.equals("budget.txt"));
+        assertEquals(1, filtered.size());
+        assertEquals("rules.txt", filtered.get(0).getId());
+
+        weights.put("annual", 0.5f);
+        List<SearchResult> halved = index.search(weights, 5, id -> id.equals("rules.txt"));
+        assertEquals(filtered.get(0).getScore() / 2, halved.get(0).getScore(), 1e-6f);
+    }
+
+    @Test
+    public void testSimilarTermsFollowTheDictionary() {
+        Bm25Index index = sampleIndex();
+
+        Map<String, Integer> similar = new HashMap<>();
+        index.forEachSimilarTerm("shedule", 1, similar::put);
+        assertEquals(Collections.singletonMap("schedule", 1), similar);
+
+        index.remove("housing.pdf");
+        similar.clear();
+        index.forEachSimilarTerm("housng", 1, similar::put);
+        assertTrue(similar.isEmpty());
+    }
+}
@@ -0,0 +1,64 @@
+package com.lnmcp.lena.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopKSelectorTest {
+
+    @Test
+    public void testSelectsHighestScoresInDescendingOrder() {
+        Random random = new Random(7);
+        float[] all = new float[1000];
+        TopKSelector selector = new TopKSelector(10);
+        for (int i = 0; i < all.length; i++) {
+            all[i] = random.nextFloat();
+            selector.offer(i, all[i]);
+        }
+
+        int[] items = new int[10];
+        float[] scores = new float[10];
+        assertEquals(10, selector.drainDescending(items, scores));
+        assertEquals(0, selector.size());
+
+        float[] sorted = all.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(sorted[sorted.length - 1 - i], scores[i], 0.0f);
+            assertEquals(all[items[i]], scores[i], 0.0f);
+        }
+    }
+
+    @Test
+    public void testFewerCandidatesThanK() {
+        TopKSelector selector = new TopKSelector(5);
+        selector.offer(0, 0.2f);
+        selector.offer(1, 0.9f);
+        selector.offer(2, 0.5f);
+        assertEquals(Float.NEGATIVE_INFINITY, selector.threshold(), 0.0f);
+
+        String[] ids = {"a", "b", "c"};
+        List<SearchResult> results = selector.drainResults(item -> ids[item]);
+
+        assertEquals(Arrays.asList(new SearchResult("b", 0.9f), new SearchResult("c", 0.5f),
+                new SearchResult("a", 0.2f)), results);
+    }
+
+    @Test
+    public void testScoreTableKeepsBestScorePerKey() {
+        ScoreTable table = new ScoreTable();
+        for (int i = 0; i < 100; i++) {
+            table.max("doc" + (i % 20), i / 100.0f);
+        }
+
+        List<SearchResult> top = table.top(3);
+
+        assertEquals(20, table.size());
+        assertEquals(Arrays.asList(new SearchResult("doc19", 0.99f), new SearchResult("doc18", 0.98f),
+                new SearchResult("doc17", 0.97f)), top);
+    }
+}
@@ -0,0 +1,71 @@
+package com.lnmcp.lena.service.impl;
+
+import com.lnmcp.lena.service.DocumentService;
+import com.lnmcp.lena.service.ResponseCacheService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class DocumentWatcherImplTest {
+
+    @Mock
+    private DocumentService documentService;
+
+    @Mock
+    private ResponseCacheService responseCacheService;
+
+    @InjectMocks
+    private DocumentWatcherImpl documentWatcher;
+
+    @Test
+    public void testOverflowRemovesDocumentsDeletedMeanwhile() throws Exception {
+        // kept.pdf is still on disk, deleted.pdf went away while events were lost
+        when(documentService.getAllDocuments()).thenReturn(Collections.singletonList("kept.pdf"));
+        when(documentService.getIndexedDocuments())
+                .thenReturn(new HashSet<>(Arrays.asList("kept.pdf", "deleted.pdf")));
+        when(documentService.removeDocument("deleted.pdf")).thenReturn(true);
+
+        documentWatcher.recordEvents(Collections.singletonList(overflow()), System.nanoTime());
+        documentWatcher.reindexQuietChanges();
+
+        verify(documentService).reloadDocument("kept.pdf");
+        verify(documentService).removeDocument("deleted.pdf");
+        verify(documentService, never()).removeDocument("kept.pdf");
+        verify(responseCacheService).evictAll();
+
+        // The rescan is done once
+        documentWatcher.reindexQuietChanges();
+        verify(documentService, times(1)).getAllDocuments();
+    }
+
+    private static WatchEvent<Object> overflow() {
+        return new WatchEvent<>() {
+            @Override
+            public Kind<Object> kind() {
+                return StandardWatchEventKinds.OVERFLOW;
+            }
+
+            @Override
+            public int count() {
+                return 1;
+            }
+
+            @Override
+            public Object context() {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,166 @@
+package com.lnmcp.lena.service.impl;
+
+import com.lnmcp.lena.model.DocumentChunk;
+import com.lnmcp.lena.model.EmbeddingStatus;
+import com.lnmcp.lena.service.EmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class EmbeddingPipelineImplTest {
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    private EmbeddingPipelineImpl pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new EmbeddingPipelineImpl(embeddingService);
+        ReflectionTestUtils.setField(pipeline, "queueCapacity", 1);
+        ReflectionTestUtils.setField(pipeline, "workers", 1);
+        ReflectionTestUtils.setField(pipeline, "batchDocuments", 1);
+        ReflectionTestUtils.setField(pipeline, "batchWaitMillis", 0L);
+        ReflectionTestUtils.setField(pipeline, "maxAttempts", 3);
+        ReflectionTestUtils.setField(pipeline, "retryBackoffMillis", 10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pipeline.shutdown();
+    }
+
+    private static List<DocumentChunk> passages(String documentId, int firstIndex, int count) {
+        List<DocumentChunk> passages = new ArrayList<>();
+        for (int i = firstIndex; i < firstIndex + count; i++) {
+            passages.add(DocumentChunk.builder()
+                    .documentId(documentId)
+                    .chunkIndex(i)
+                    .pageNumber(1)
+                    .content("passage " + i)
+                    .build());
+        }
+        return passages;
+    }
+
+    private void awaitStatus(String documentId, EmbeddingStatus status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pipeline.getStatus(documentId) != status && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(status, pipeline.getStatus(documentId), documentId);
+    }
+
+    /**
+     * Make the first batch wait until the returned latch is released
+     */
+    private CountDownLatch blockFirstBatch(CountDownLatch started) {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return null;
+        }).doNothing().when(embeddingService).storePassageEmbeddings(anyList());
+        return release;
+    }
+
+    @Test
+    public void testFullQueueParksDocumentsWithoutBlockingAndDrainsThem() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = blockFirstBatch(started);
+        when(embeddingService.hasDocumentEmbedding(anyString())).thenReturn(true);
+        pipeline.initialize();
+
+        assertTrue(pipeline.submit("doc0", passages("doc0", 0, 1)));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // One document fits in the queue, the rest are parked without waiting for space
+        long start = System.nanoTime();
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(pipeline.submit("doc" + i, passages("doc" + i, 0, 1)));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(EmbeddingStatus.QUEUED, pipeline.getStatus("doc" + i));
+        }
+
+        release.countDown();
+        for (int i = 0; i <= 4; i++) {
+            awaitStatus("doc" + i, EmbeddingStatus.READY);
+        }
+        verify(embeddingService, times(5)).storePassageEmbeddings(anyList());
+    }
+
+    @Test
+    public void testDocumentIsRetriedWithBackoffThenFails() throws InterruptedException {
+        when(embeddingService.hasDocumentEmbedding("doc")).thenReturn(false);
+        pipeline.initialize();
+
+        pipeline.submit("doc", passages("doc", 0, 2));
+
+        awaitStatus("doc", EmbeddingStatus.FAILED);
+        verify(embeddingService, times(3)).storePassageEmbeddings(anyList());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSectionsSubmittedDuringBatchAreEmbeddedWithIt() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = blockFirstBatch(started);
+        when(embeddingService.hasDocumentEmbedding("doc")).thenReturn(true);
+        pipeline.initialize();
+
+        pipeline.submit("doc", passages("doc", 0, 2));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // The next section arrives while the first is being embedded
+        pipeline.submit("doc", passages("doc", 2, 2));
+        release.countDown();
+
+        awaitStatus("doc", EmbeddingStatus.READY);
+        ArgumentCaptor<List<DocumentChunk>> batches = ArgumentCaptor.forClass(List.class);
+        verify(embeddingService, times(2)).storePassageEmbeddings(batches.capture());
+        List<Integer> second = batches.getAllValues().get(1).stream()
+                .map(DocumentChunk::getChunkIndex)
+                .collect(Collectors.toList());
+        // The running batch's passages go again with the new section, in document order
+        assertEquals(List.of(0, 1, 2, 3), second);
+    }
+
+    @Test
+    public void testDocumentCancelledDuringBatchIsRemoved() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = blockFirstBatch(started);
+        CountDownLatch removed = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            removed.countDown();
+            return null;
+        }).when(embeddingService).removeDocumentEmbedding("doc");
+        pipeline.initialize();
+
+        pipeline.submit("doc", passages("doc", 0, 2));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.cancel("doc");
+        release.countDown();
+
+        assertTrue(removed.await(5, TimeUnit.SECONDS));
+        assertNull(pipeline.getStatus("doc"));
+        verify(embeddingService, never()).hasDocumentEmbedding("doc");
+    }
+}
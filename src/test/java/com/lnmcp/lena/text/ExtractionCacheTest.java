@@ -0,0 +1,137 @@
+package com.lnmcp.lena.text;
+
+import com.lnmcp.lena.model.DocumentContext;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtractionCacheTest {
+
+    private static DocumentContext section(String content, int pageNumber) {
+        return DocumentContext.builder()
+                .filename("report.pdf")
+                .documentType(DocumentContext.DocumentType.PDF)
+                .content(content)
+                .pageNumber(pageNumber)
+                .pageCount(12)
+                .build();
+    }
+
+    private static List<DocumentContext> sections(String content) {
+        return Collections.singletonList(section(content, 1));
+    }
+
+    private static Path onlyEntry(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.collect(Collectors.toList());
+            assertEquals(1, entries.size(), "Expected one entry and no temporary files: " + entries);
+            return entries.get(0);
+        }
+    }
+
+    @Test
+    public void testPutAndGetRoundTrip() throws IOException {
+        Path directory = Files.createTempDirectory("extraction-cache");
+        Path file = Files.createTempFile("report", ".pdf");
+        try {
+            Files.write(file, "원본 문서".getBytes(StandardCharsets.UTF_8));
+            ExtractionCache cache = new ExtractionCache(directory);
+            assertNull(cache.get(file));
+
+            String first = "추출된 텍스트\fpage two\f";
+            String second = "page eleven\fpage twelve\f";
+            cache.put(file, cache.state(file), Arrays.asList(section(first, 1), section(second, 11)));
+
+            // A fresh instance reads the entry written by the previous one, as after a restart
+            List<DocumentContext> cached = new ExtractionCache(directory).get(file);
+            assertNotNull(cached);
+            assertEquals(2, cached.size());
+            assertEquals("report.pdf", cached.get(0).getFilename());
+            assertEquals(DocumentContext.DocumentType.PDF, cached.get(0).getDocumentType());
+            assertEquals(first, cached.get(0).getContent());
+            assertEquals(1, (int) cached.get(0).getPageNumber());
+            assertEquals(second, cached.get(1).getContent());
+            assertEquals(11, (int) cached.get(1).getPageNumber());
+            assertEquals(12, (int) cached.get(1).getPageCount());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testTouchedFileWithSameContentIsReused() throws IOException {
+        Path directory = Files.createTempDirectory("extraction-cache");
+        Path file = Files.createTempFile("report", ".txt");
+        try {
+            Files.write(file, "same bytes".getBytes(StandardCharsets.UTF_8));
+            ExtractionCache cache = new ExtractionCache(directory);
+            cache.put(file, cache.state(file), sections("text"));
+            Path entry = onlyEntry(directory);
+            byte[] before = Files.readAllBytes(entry);
+
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+            List<DocumentContext> cached = cache.get(file);
+            assertNotNull(cached);
+            assertEquals("text", cached.get(0).getContent());
+
+            // The entry was rewritten in place with the new timestamp, after being read
+            assertEquals(entry, onlyEntry(directory));
+            assertFalse(Arrays.equals(before, Files.readAllBytes(entry)));
+            assertEquals("text", cache.get(file).get(0).getContent());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testChangedFileIsInvalidated() throws IOException {
+        Path directory = Files.createTempDirectory("extraction-cache");
+        Path file = Files.createTempFile("report", ".txt");
+        try {
+            Files.write(file, "version one".getBytes(StandardCharsets.UTF_8));
+            ExtractionCache cache = new ExtractionCache(directory);
+            cache.put(file, cache.state(file), sections("text"));
+
+            // Same size, different bytes and timestamp
+            Files.write(file, "version two".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+            assertNull(cache.get(file));
+
+            Files.write(file, "a longer version three".getBytes(StandardCharsets.UTF_8));
+            assertNull(cache.get(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testFileRewrittenDuringParseIsNotCachedAsCurrent() throws IOException {
+        Path directory = Files.createTempDirectory("extraction-cache");
+        Path file = Files.createTempFile("report", ".txt");
+        try {
+            Files.write(file, "version one".getBytes(StandardCharsets.UTF_8));
+            ExtractionCache cache = new ExtractionCache(directory);
+            ExtractionCache.FileState parsed = cache.state(file);
+
+            // Rewritten after the parse started but before its text is cached
+            Files.write(file, "version two".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 60_000));
+            cache.put(file, parsed, sections("text of version one"));
+
+            assertNull(cache.get(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
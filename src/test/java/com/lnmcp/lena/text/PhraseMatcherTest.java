@@ -0,0 +1,61 @@
+package com.lnmcp.lena.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhraseMatcherTest {
+
+    private static int countOccurrences(String text, String pattern) {
+        int count = 0;
+        for (int index = text.indexOf(pattern); index >= 0; index = text.indexOf(pattern, index + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testCountsOverlappingAndNestedPatterns() {
+        PhraseMatcher matcher = new PhraseMatcher(Arrays.asList("he", "she", "his", "hers", "", "she"));
+        int[] counts = matcher.count("ushers and his sheep");
+
+        assertEquals(6, matcher.patternCount());
+        assertArrayEquals(new int[]{2, 2, 1, 1, 0, 2}, counts);
+    }
+
+    @Test
+    public void testIgnoresCaseAndMatchesHangul() {
+        PhraseMatcher matcher = new PhraseMatcher(Arrays.asList("Application Schedule", "입주자 모집"));
+        int[] counts = matcher.count("2024 입주자 모집 공고: APPLICATION schedule, application Schedule");
+
+        assertArrayEquals(new int[]{2, 1}, counts);
+    }
+
+    @Test
+    public void testMatchesIndexOfOnRandomText() {
+        Random random = new Random(3);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append((char) ('a' + random.nextInt(3)));
+        }
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int start = random.nextInt(text.length() - 8);
+            patterns.add(text.substring(start, start + 1 + random.nextInt(7)));
+        }
+
+        PhraseMatcher matcher = new PhraseMatcher(patterns);
+        int[] counts = new int[patterns.size()];
+        // Counts accumulate across texts
+        matcher.count(text, counts);
+        matcher.count(text, counts);
+        for (int i = 0; i < patterns.size(); i++) {
+            assertEquals(2 * countOccurrences(text.toString(), patterns.get(i)), counts[i], patterns.get(i));
+        }
+    }
+}
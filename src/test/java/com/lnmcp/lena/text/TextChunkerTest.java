@@ -0,0 +1,80 @@
+package com.lnmcp.lena.text;
+
+import com.lnmcp.lena.model.DocumentChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextChunkerTest {
+
+    @Test
+    public void testShortContentIsOneChunk() {
+        TextChunker chunker = new TextChunker(100, 20);
+
+        List<DocumentChunk> chunks = chunker.chunk("doc.txt", "  A short document.  ");
+
+        assertEquals(1, chunks.size());
+        assertEquals("A short document.", chunks.get(0).getContent());
+        assertEquals("doc.txt", chunks.get(0).getDocumentId());
+        assertEquals(1, (int) chunks.get(0).getPageNumber());
+    }
+
+    @Test
+    public void testChunksRespectSizeAndSentenceBoundaries() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            content.append("Sentence number ").append(i).append(" talks about housing. ");
+        }
+        TextChunker chunker = new TextChunker(200, 50);
+
+        List<DocumentChunk> chunks = chunker.chunk("doc.txt", content.toString());
+
+        assertTrue(chunks.size() > 1);
+        for (int i = 0; i < chunks.size(); i++) {
+            DocumentChunk chunk = chunks.get(i);
+            assertEquals(i, chunk.getChunkIndex());
+            assertTrue(chunk.getEndOffset() - chunk.getStartOffset() <= 200);
+            if (i < chunks.size() - 1) {
+                assertTrue(chunk.getContent().endsWith("."), "Chunk should end at a sentence: " + chunk.getContent());
+                // Consecutive chunks overlap
+                assertTrue(chunks.get(i + 1).getStartOffset() < chunk.getEndOffset());
+            }
+        }
+    }
+
+    @Test
+    public void testPageNumbersFollowFormFeeds() {
+        String page = "word ".repeat(30);
+        String content = page + "\f" + page + "\f" + page;
+        TextChunker chunker = new TextChunker(160, 0);
+
+        List<DocumentChunk> chunks = chunker.chunk("doc.pdf", content);
+
+        assertEquals(1, (int) chunks.get(0).getPageNumber());
+        assertEquals(3, (int) chunks.get(chunks.size() - 1).getPageNumber());
+    }
+
+    @Test
+    public void testSectionPassagesContinueNumberingAndPages() {
+        String page = "word ".repeat(30);
+        TextChunker chunker = new TextChunker(160, 0);
+
+        List<DocumentChunk> chunks = chunker.chunk("doc.pdf", page + "\f" + page, 11, 7);
+
+        assertEquals(7, chunks.get(0).getChunkIndex());
+        assertEquals(11, (int) chunks.get(0).getPageNumber());
+        assertEquals(6 + chunks.size(), chunks.get(chunks.size() - 1).getChunkIndex());
+        assertEquals(12, (int) chunks.get(chunks.size() - 1).getPageNumber());
+    }
+
+    @Test
+    public void testPageAtCountsPreviousPageBreaks() {
+        String content = "first page\fsecond page\fthird page";
+
+        assertEquals(1, TextChunker.pageAt(content, 0));
+        assertEquals(2, TextChunker.pageAt(content, content.indexOf("second")));
+        assertEquals(3, TextChunker.pageAt(content, content.length()));
+    }
+}
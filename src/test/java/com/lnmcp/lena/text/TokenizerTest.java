@@ -0,0 +1,49 @@
+package com.lnmcp.lena.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenizerTest {
+
+    @Test
+    public void testLatinWordsAreLowercasedAndSplitFromHangul() {
+        assertEquals(Arrays.asList("pdf", "2024", "report"), Tokenizer.tokenize("PDF-2024 Report!"));
+        assertEquals(Arrays.asList("2024", "년"), Tokenizer.tokenize("2024년"));
+        assertTrue(Tokenizer.tokenize(" .,; ").isEmpty());
+    }
+
+    @Test
+    public void testHangulEmitsEojeolStemAndBigrams() {
+        assertEquals(Arrays.asList("입주자를", "입주자", "입주", "주자"), Tokenizer.tokenize("입주자를"));
+        assertEquals(Arrays.asList("공고"), Tokenizer.tokenize("공고"));
+        assertEquals(Arrays.asList("공고는", "공고"), Tokenizer.tokenize("공고는"));
+
+        List<String> compound = Tokenizer.tokenize("입주자모집공고");
+        assertTrue(compound.containsAll(Arrays.asList("입주", "주자", "모집", "공고")));
+
+        // A query with a particle shares its stem and bigrams with the unmarked form
+        assertTrue(Tokenizer.tokenize("입주자모집공고에서").containsAll(compound));
+    }
+
+    @Test
+    public void testSuffixStrippingKeepsTwoSyllableStems() {
+        assertEquals("모집", Tokenizer.stripSuffix("모집은"));
+        assertEquals("서울", Tokenizer.stripSuffix("서울에서"));
+        assertEquals("신청", Tokenizer.stripSuffix("신청으로부터"));
+        // Stripping would leave one syllable, so the word is kept whole
+        assertEquals("사이", Tokenizer.stripSuffix("사이"));
+        assertEquals("나이", Tokenizer.stripSuffix("나이"));
+    }
+
+    @Test
+    public void testKeywordsDropStopWordsShortWordsAndDuplicates() {
+        List<String> keywords = Tokenizer.keywords("What is the 입주자 schedule for the 입주자를 of 집?");
+        assertEquals(Arrays.asList("what", "입주자", "입주", "주자", "schedule", "입주자를"), keywords);
+        assertTrue(Tokenizer.keywords("  ").isEmpty());
+        assertTrue(Tokenizer.keywords(null).isEmpty());
+    }
+}
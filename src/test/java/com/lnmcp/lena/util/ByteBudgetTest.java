@@ -0,0 +1,30 @@
+package com.lnmcp.lena.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ByteBudgetTest {
+
+    @Test
+    public void testLeasesReserveAndReleaseBytes() throws InterruptedException {
+        ByteBudget budget = new ByteBudget(1024 * 1024);
+
+        ByteBudget.Lease lease = budget.acquire(300 * 1024);
+        assertEquals(724 * 1024, budget.availableBytes());
+
+        lease.close();
+        lease.close();
+        assertEquals(1024 * 1024, budget.availableBytes());
+    }
+
+    @Test
+    public void testOversizedRequestTakesWholeBudget() throws InterruptedException {
+        ByteBudget budget = new ByteBudget(1024 * 1024);
+
+        try (ByteBudget.Lease lease = budget.acquire(10L * 1024 * 1024 * 1024)) {
+            assertEquals(0, budget.availableBytes());
+        }
+        assertEquals(1024 * 1024, budget.availableBytes());
+    }
+}
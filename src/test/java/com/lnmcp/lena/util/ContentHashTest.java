@@ -0,0 +1,30 @@
+package com.lnmcp.lena.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentHashTest {
+
+    @Test
+    public void testKnownXxHash64Values() {
+        assertEquals(0xEF46DB3751D8E999L, ContentHash.hash(""));
+        assertEquals(0xD24EC4F1A98C6E5BL, ContentHash.hash("a"));
+        assertEquals(0x44BC2CF5AD770999L, ContentHash.hash("abc"));
+    }
+
+    @Test
+    public void testLongInputAndRanges() {
+        String text = "입주자모집공고 The quick brown fox jumps over the lazy dog, repeatedly and at length.";
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(ContentHash.hash(text), ContentHash.xxHash64(bytes, 0L));
+        assertFalse(ContentHash.hash(text) == ContentHash.hash(text + " "));
+
+        byte[] padded = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, padded, 2, bytes.length);
+        assertEquals(ContentHash.xxHash64(bytes, 0L), ContentHash.xxHash64(padded, 2, bytes.length, 0L));
+    }
+}
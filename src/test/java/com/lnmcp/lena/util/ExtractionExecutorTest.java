@@ -0,0 +1,120 @@
+package com.lnmcp.lena.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtractionExecutorTest {
+
+    @Test
+    public void testResultsKeepInputOrderAndFailuresAreNull() {
+        ExtractionExecutor executor = new ExtractionExecutor("Test-Extraction", 3, 8, 0);
+        try {
+            List<String> results = executor.map(Arrays.asList("a", "bad", "c", "d"), input -> {
+                if (input.equals("bad")) {
+                    throw new IOException("unreadable");
+                }
+                return input.toUpperCase();
+            });
+
+            assertEquals(Arrays.asList("A", null, "C", "D"), results);
+            assertEquals(4, executor.getSubmittedCount());
+            assertEquals(3, executor.getCompletedCount());
+            assertEquals(1, executor.getFailedCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSlowTaskTimesOutWithoutBlockingOthers() {
+        ExtractionExecutor executor = new ExtractionExecutor("Test-Extraction", 2, 8, 200);
+        try {
+            long start = System.nanoTime();
+            List<Integer> results = executor.map(Arrays.asList(1, 10_000, 3), millis -> {
+                Thread.sleep(millis);
+                return millis;
+            });
+
+            assertEquals(Arrays.asList(1, null, 3), results);
+            assertEquals(1, executor.getTimedOutCount());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTimeoutClosesResourcesOfTaskIgnoringInterrupts() throws InterruptedException {
+        ExtractionExecutor executor = new ExtractionExecutor("Test-Extraction", 1, 8, 200);
+        ByteBudget budget = new ByteBudget(4096);
+        AtomicBoolean closed = new AtomicBoolean();
+        AtomicBoolean stop = new AtomicBoolean();
+        try {
+            List<String> results = executor.map(Arrays.asList("stuck"), input -> {
+                try (ByteBudget.Lease lease = budget.acquire(4096)) {
+                    ExtractionExecutor.closeOnTimeout(lease);
+                    ExtractionExecutor.closeOnTimeout(() -> closed.set(true));
+                    // Like a parser that never checks for interrupts
+                    while (!stop.get()) {
+                        Thread.onSpinWait();
+                    }
+                    return input;
+                }
+            });
+
+            assertEquals(Collections.singletonList(null), results);
+            assertEquals(1, executor.getTimedOutCount());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (budget.availableBytes() < 4096 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            // Released by the watchdog while the worker is still stuck
+            assertEquals(4096, budget.availableBytes());
+            assertTrue(closed.get());
+        } finally {
+            stop.set(true);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFullQueueRunsTasksOnCaller() throws InterruptedException {
+        ExtractionExecutor executor = new ExtractionExecutor("Test-Extraction", 1, 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread caller = Thread.currentThread();
+        try {
+            Thread blocker = new Thread(() -> executor.map(Arrays.asList("block"), input -> {
+                release.await();
+                return input;
+            }));
+            blocker.start();
+            while (executor.getActiveCount() == 0) {
+                Thread.sleep(5);
+            }
+
+            // One task fits in the queue; the others run on this thread, and the last frees the worker
+            List<Boolean> ranOnCaller = executor.map(Arrays.asList("a", "b", "c"), input -> {
+                if (input.equals("c")) {
+                    release.countDown();
+                }
+                return Thread.currentThread() == caller;
+            });
+            blocker.join();
+
+            assertEquals(2, executor.getCallerRunsCount());
+            assertEquals(Arrays.asList(false, true, true), ranOnCaller);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+}
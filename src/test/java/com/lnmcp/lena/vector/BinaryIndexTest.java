@@ -0,0 +1,91 @@
+package com.lnmcp.lena.vector;
+
+import com.lnmcp.lena.search.TopKSelector;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryIndexTest {
+
+    private static final int DIMENSION = 96;
+
+    @Test
+    public void testRerankedResultsMatchExactSearch() {
+        Random random = new Random(3);
+        VectorStore store = new VectorStore();
+        BinaryIndex index = new BinaryIndex(store, 200);
+        float[][] topics = new float[30][];
+        for (int t = 0; t < topics.length; t++) {
+            topics[t] = randomVector(random);
+        }
+        for (int i = 0; i < 3000; i++) {
+            index.add(store.put("doc" + i, nearby(topics[random.nextInt(topics.length)], random, 0.5f)));
+        }
+
+        int k = 5;
+        int hits = 0;
+        int queries = 30;
+        for (int q = 0; q < queries; q++) {
+            float[] query = nearby(topics[random.nextInt(topics.length)], random, 0.5f);
+
+            int[] exactSlots = new int[k];
+            float[] exactScores = new float[k];
+            TopKSelector exact = new TopKSelector(k);
+            store.scan(query, exact::offer);
+            exact.drainDescending(exactSlots, exactScores);
+
+            int[] slots = new int[k];
+            float[] scores = new float[k];
+            assertEquals(k, index.search(query, k, slots, scores));
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    if (slots[i] == exactSlots[j]) {
+                        hits++;
+                    }
+                }
+                if (i > 0) {
+                    assertTrue(scores[i - 1] >= scores[i], "Results must be ordered by score");
+                }
+            }
+        }
+        assertTrue(hits >= queries * k * 0.9, "Recall too low: " + hits);
+    }
+
+    @Test
+    public void testRemovedSlotsAreNotReturned() {
+        VectorStore store = new VectorStore();
+        BinaryIndex index = new BinaryIndex(store, 10);
+        int first = store.put("doc1", new float[]{1.0f, -1.0f});
+        index.add(first);
+        index.add(store.put("doc2", new float[]{-1.0f, 1.0f}));
+        index.add(store.put("doc3", new float[]{0.9f, -0.8f}));
+
+        index.remove(first);
+        store.remove("doc1");
+
+        int[] slots = new int[3];
+        float[] scores = new float[3];
+        int found = index.search(new float[]{1.0f, -1.0f}, 3, slots, scores);
+        assertEquals(2, found);
+        assertEquals("doc3", store.idAt(slots[0]));
+        assertEquals("doc2", store.idAt(slots[1]));
+    }
+
+    private static float[] nearby(float[] center, Random random, float noise) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = center[i] + (float) random.nextGaussian() * noise;
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
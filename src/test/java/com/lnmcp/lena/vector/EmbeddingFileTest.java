@@ -0,0 +1,140 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EmbeddingFileTest {
+
+    @Test
+    public void testWriteAndReadRoundTrip() throws IOException {
+        VectorStore store = new VectorStore();
+        store.put("doc1.pdf", new float[]{3.0f, 4.0f, 0.0f});
+        store.put("문서2.txt", new float[]{0.0f, 0.0f, 2.0f});
+        Map<String, Long> hashes = new HashMap<>();
+        hashes.put("doc1.pdf", 42L);
+        hashes.put("문서2.txt", -7L);
+
+        Path file = Files.createTempFile("embeddings", ".bin");
+        try {
+            EmbeddingFile.write(file, "nomic-embed-text", store.snapshot(), hashes);
+            EmbeddingFile.Contents contents = EmbeddingFile.read(file);
+
+            assertEquals("nomic-embed-text", contents.getModel());
+            assertEquals(3, contents.getDimension());
+            assertEquals(2, contents.size());
+
+            Map<String, float[]> vectors = new HashMap<>();
+            for (int i = 0; i < contents.size(); i++) {
+                float[] vector = new float[contents.getDimension()];
+                contents.readVector(i, vector);
+                vectors.put(contents.getId(i), vector);
+                assertEquals((long) hashes.get(contents.getId(i)), contents.getContentHash(i));
+            }
+            assertArrayEquals(new float[]{0.6f, 0.8f, 0.0f}, vectors.get("doc1.pdf"), 1e-6f);
+            assertArrayEquals(new float[]{0.0f, 0.0f, 1.0f}, vectors.get("문서2.txt"), 1e-6f);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testVectorsSpanSeveralMappedSegments() throws IOException {
+        VectorStore store = new VectorStore();
+        Random random = new Random(5);
+        for (int i = 0; i < 100; i++) {
+            store.put("doc" + i, randomVector(random, 24));
+        }
+
+        Path file = Files.createTempFile("embeddings", ".bin");
+        try {
+            EmbeddingFile.write(file, "model", store.snapshot(), new HashMap<>());
+            // Segments of 7 rows, so rows straddle no boundary but most live past the first segment
+            EmbeddingFile.Contents contents = EmbeddingFile.read(file, 7 * 24 * Float.BYTES);
+
+            float[] vector = new float[24];
+            for (int i = 0; i < contents.size(); i++) {
+                contents.readVector(i, vector);
+                assertArrayEquals(store.get(contents.getId(i)), vector, 1e-6f);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testStoreScoresLoadedVectorsInPlace() throws IOException {
+        VectorStore original = new VectorStore();
+        Random random = new Random(9);
+        for (int i = 0; i < 50; i++) {
+            original.put("doc" + i, randomVector(random, 16));
+        }
+
+        Path file = Files.createTempFile("embeddings", ".bin");
+        try {
+            EmbeddingFile.write(file, "model", original.snapshot(), new HashMap<>());
+            VectorStore loaded = new VectorStore();
+            loaded.load(EmbeddingFile.read(file, 5 * 16 * Float.BYTES));
+            assertEquals(50, loaded.size());
+            assertEquals(50, loaded.mappedSlots());
+
+            float[] query = randomVector(random, 16);
+            Map<String, Float> expected = new HashMap<>();
+            original.scan(query, (slot, score) -> expected.put(original.idAt(slot), score));
+            Map<String, Float> actual = new HashMap<>();
+            loaded.scan(query, (slot, score) -> actual.put(loaded.idAt(slot), score));
+            assertEquals(expected.size(), actual.size());
+            for (Map.Entry<String, Float> entry : expected.entrySet()) {
+                assertEquals((float) entry.getValue(), (float) actual.get(entry.getKey()), 1e-5f);
+            }
+
+            // Mapped rows are read-only: replacing one moves its id to the heap slab
+            int mappedSlot = loaded.slotOf("doc3");
+            float[] replacement = randomVector(random, 16);
+            int newSlot = loaded.put("doc3", replacement);
+            assertNotEquals(mappedSlot, newSlot);
+            assertNull(loaded.idAt(mappedSlot));
+            assertArrayEquals(VectorMath.normalize(replacement), loaded.get("doc3"), 1e-6f);
+            assertEquals(loaded.score(newSlot, VectorMath.normalize(replacement)), 1.0f, 1e-5f);
+            assertEquals(loaded.similarity(newSlot, loaded.slotOf("doc4")),
+                    VectorMath.dot(loaded.get("doc3"), loaded.get("doc4")), 1e-5f);
+
+            // Removed mapped slots are not reused
+            int removedSlot = loaded.slotOf("doc7");
+            assertTrue(loaded.remove("doc7"));
+            assertNotEquals(removedSlot, loaded.put("new", randomVector(random, 16)));
+            assertEquals(50, loaded.size());
+            assertEquals(50, loaded.snapshot().size());
+
+            assertThrows(IllegalStateException.class, () -> loaded.load(EmbeddingFile.read(file)));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testRejectsForeignFile() throws IOException {
+        Path file = Files.createTempFile("embeddings", ".bin");
+        try {
+            Files.writeString(file, "not an embedding file at all, just text");
+            assertThrows(IOException.class, () -> EmbeddingFile.read(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
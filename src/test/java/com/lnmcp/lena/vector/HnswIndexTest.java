@@ -0,0 +1,100 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    public void testRecallAgainstExactSearch() {
+        Random random = new Random(7);
+        VectorStore store = new VectorStore();
+        HnswIndex index = new HnswIndex(store, 16, 200, 64);
+        for (int i = 0; i < 2000; i++) {
+            index.add(store.put("doc" + i, randomVector(random)));
+        }
+
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random);
+            Set<Integer> expected = exactTopK(store, query, k);
+
+            int[] slots = new int[k];
+            float[] scores = new float[k];
+            int found = index.search(query, k, slots, scores);
+            assertEquals(k, found);
+            for (int i = 0; i < found; i++) {
+                if (expected.contains(slots[i])) {
+                    hits++;
+                }
+                if (i > 0) {
+                    assertTrue(scores[i - 1] >= scores[i], "Results must be ordered by score");
+                }
+            }
+        }
+
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.9, "Recall too low: " + recall);
+    }
+
+    @Test
+    public void testRemovedSlotsAreNotReturned() {
+        VectorStore store = new VectorStore();
+        HnswIndex index = new HnswIndex(store, 4, 32, 16);
+        int first = store.put("doc1", new float[]{1.0f, 0.0f});
+        index.add(first);
+        index.add(store.put("doc2", new float[]{0.0f, 1.0f}));
+        index.add(store.put("doc3", new float[]{0.7f, 0.7f}));
+
+        index.remove(first);
+        store.remove("doc1");
+
+        int[] slots = new int[3];
+        float[] scores = new float[3];
+        int found = index.search(new float[]{1.0f, 0.0f}, 3, slots, scores);
+        assertEquals(2, found);
+        for (int i = 0; i < found; i++) {
+            assertFalse(slots[i] == first);
+        }
+    }
+
+    private static Set<Integer> exactTopK(VectorStore store, float[] query, int k) {
+        int[] best = new int[k];
+        float[] bestScores = new float[k];
+        java.util.Arrays.fill(bestScores, -2.0f);
+        store.scan(query, (slot, score) -> {
+            int min = 0;
+            for (int i = 1; i < k; i++) {
+                if (bestScores[i] < bestScores[min]) {
+                    min = i;
+                }
+            }
+            if (score > bestScores[min]) {
+                bestScores[min] = score;
+                best[min] = slot;
+            }
+        });
+        Set<Integer> result = new HashSet<>();
+        for (int slot : best) {
+            result.add(slot);
+        }
+        return result;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,83 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexGenerationTest {
+
+    @Test
+    public void testGenerationIsTaggedWithModelAndDimension() {
+        IndexGeneration generation = new IndexGeneration(1, "nomic-embed-text", new VectorStore(), null);
+        assertEquals("nomic-embed-text", generation.getModel());
+        assertEquals(0, generation.dimension());
+
+        generation.put("doc#0", new float[]{1.0f, 0.0f, 0.0f}, 42L);
+        assertEquals(3, generation.dimension());
+
+        // Vectors from a model with another dimension cannot be mixed into the generation
+        assertThrows(IllegalArgumentException.class,
+                () -> generation.put("doc#1", new float[]{1.0f, 0.0f}, 43L));
+    }
+
+    @Test
+    public void testPutRemoveAndUpToDate() {
+        VectorStore store = new VectorStore();
+        IndexGeneration generation = new IndexGeneration(1, "model", store, new HnswIndex(store, 4, 16, 16));
+        generation.put("doc#0", new float[]{1.0f, 0.0f}, 7L);
+
+        assertTrue(generation.isUpToDate("doc#0", 7L));
+        assertFalse(generation.isUpToDate("doc#0", 8L));
+        assertEquals(7L, (long) generation.getContentHashes().get("doc#0"));
+
+        assertTrue(generation.remove("doc#0"));
+        assertFalse(generation.remove("doc#0"));
+        assertFalse(generation.isUpToDate("doc#0", 7L));
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void testLoadRebuildsIndexInBackground() throws IOException {
+        VectorStore source = new VectorStore();
+        for (int i = 0; i < 20; i++) {
+            source.put("doc#" + i, new float[]{i, 1.0f, -i});
+        }
+        Path file = Files.createTempFile("embeddings", ".bin");
+        try {
+            EmbeddingFile.write(file, "model", source.snapshot(), new HashMap<>());
+
+            VectorStore store = new VectorStore();
+            HnswIndex index = new HnswIndex(store, 4, 16, 16);
+            IndexGeneration generation = new IndexGeneration(2, "model", store, index);
+            List<Runnable> pending = new ArrayList<>();
+            generation.load(EmbeddingFile.read(file), pending::add);
+
+            // Vectors are served at once; the index is not used until it has been rebuilt
+            assertEquals(20, store.size());
+            assertFalse(generation.isIndexReady());
+            assertNull(generation.getIndex());
+
+            generation.put("doc#new", new float[]{1.0f, 1.0f, 1.0f}, 1L);
+            assertEquals(1, pending.size());
+            pending.get(0).run();
+            assertTrue(generation.isIndexReady());
+            assertSame(index, generation.getIndex());
+
+            int[] slots = new int[1];
+            float[] scores = new float[1];
+            assertEquals(1, index.search(new float[]{1.0f, 1.0f, 1.0f}, 1, slots, scores));
+            assertEquals("doc#new", store.idAt(slots[0]));
+            assertEquals(1, index.search(new float[]{19.0f, 1.0f, -19.0f}, 1, slots, scores));
+            assertEquals("doc#19", store.idAt(slots[0]));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
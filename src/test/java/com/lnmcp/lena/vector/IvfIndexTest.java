@@ -0,0 +1,187 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IvfIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    public void testRecallAgainstExactSearch() {
+        Random random = new Random(7);
+        float[][] centers = new float[40][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = randomVector(random);
+        }
+
+        VectorStore store = new VectorStore();
+        // Train synchronously on the calling thread so the test is deterministic
+        IvfIndex index = new IvfIndex(store, 32, 8, 500, 0.5, Runnable::run);
+        for (int i = 0; i < 4000; i++) {
+            index.add(store.put("doc" + i, nearby(centers[random.nextInt(centers.length)], random)));
+        }
+        assertTrue(index.isTrained());
+
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = nearby(centers[random.nextInt(centers.length)], random);
+            Set<Integer> expected = exactTopK(store, query, k);
+
+            int[] slots = new int[k];
+            float[] scores = new float[k];
+            int found = index.search(query, k, slots, scores);
+            assertEquals(k, found);
+            for (int i = 0; i < found; i++) {
+                if (expected.contains(slots[i])) {
+                    hits++;
+                }
+                if (i > 0) {
+                    assertTrue(scores[i - 1] >= scores[i], "Results must be ordered by score");
+                }
+            }
+        }
+
+        double recall = (double) hits / (queries * k);
+        assertTrue(recall >= 0.9, "Recall too low: " + recall);
+    }
+
+    @Test
+    public void testTrainingSurvivesVectorsRemovedWhileSampling() {
+        Random random = new Random(11);
+        ShrinkingStore store = new ShrinkingStore();
+        // Background training is never run, so the test trains explicitly
+        IvfIndex index = new IvfIndex(store, 32, 4, 100, 0.5, task -> { });
+        for (int i = 0; i < 200; i++) {
+            index.add(store.put("doc" + i, randomVector(random)));
+        }
+
+        // All but every tenth vector disappear as training reads them, leaving fewer samples than nlist
+        store.keepEvery = 10;
+        index.train();
+        store.keepEvery = 1;
+
+        assertTrue(index.isTrained());
+        assertEquals(20, store.size());
+        int[] slots = new int[1];
+        float[] scores = new float[1];
+        assertEquals(1, index.search(store.get("doc50"), 1, slots, scores));
+        assertEquals(store.slotOf("doc50"), slots[0]);
+    }
+
+    @Test
+    public void testTrainingWithEveryVectorRemovedLeavesIndexUntrained() {
+        Random random = new Random(13);
+        ShrinkingStore store = new ShrinkingStore();
+        IvfIndex index = new IvfIndex(store, 8, 2, 20, 0.5, task -> { });
+        for (int i = 0; i < 50; i++) {
+            index.add(store.put("doc" + i, randomVector(random)));
+        }
+
+        store.keepEvery = 0;
+        index.train();
+
+        assertFalse(index.isTrained());
+    }
+
+    @Test
+    public void testUntrainedIndexSearchesExactly() {
+        VectorStore store = new VectorStore();
+        IvfIndex index = new IvfIndex(store, 0, 1, 100, 0.5, Runnable::run);
+        int first = store.put("doc1", new float[]{1.0f, 0.0f});
+        index.add(first);
+        index.add(store.put("doc2", new float[]{0.0f, 1.0f}));
+        index.add(store.put("doc3", new float[]{0.7f, 0.7f}));
+        assertFalse(index.isTrained());
+
+        index.remove(first);
+        store.remove("doc1");
+
+        int[] slots = new int[3];
+        float[] scores = new float[3];
+        int found = index.search(new float[]{1.0f, 0.0f}, 3, slots, scores);
+        assertEquals(2, found);
+        assertEquals("doc3", store.idAt(slots[0]));
+        assertEquals("doc2", store.idAt(slots[1]));
+    }
+
+    @Test
+    public void testRemovedSlotsAreNotReturnedAfterTraining() {
+        Random random = new Random(11);
+        VectorStore store = new VectorStore();
+        IvfIndex index = new IvfIndex(store, 4, 4, 50, 10.0, Runnable::run);
+        for (int i = 0; i < 100; i++) {
+            index.add(store.put("doc" + i, randomVector(random)));
+        }
+        assertTrue(index.isTrained());
+
+        int removed = store.slotOf("doc0");
+        float[] query = store.get("doc0");
+        index.remove(removed);
+        store.remove("doc0");
+
+        int[] slots = new int[100];
+        float[] scores = new float[100];
+        int found = index.search(query, 100, slots, scores);
+        assertEquals(99, found);
+        for (int i = 0; i < found; i++) {
+            assertNotEquals(removed, slots[i]);
+        }
+    }
+
+    /**
+     * Store whose vectors vanish as they are copied, as if removed concurrently with training
+     */
+    private static final class ShrinkingStore extends VectorStore {
+
+        // Slots that survive being copied are multiples of this; 1 keeps every slot, 0 none
+        volatile int keepEvery = 1;
+
+        @Override
+        public boolean copyVector(int slot, float[] target) {
+            if (keepEvery != 1 && (keepEvery == 0 || slot % keepEvery != 0)) {
+                String id = idAt(slot);
+                if (id != null) {
+                    remove(id);
+                }
+                return false;
+            }
+            return super.copyVector(slot, target);
+        }
+    }
+
+    private static Set<Integer> exactTopK(VectorStore store, float[] query, int k) {
+        Integer[] order = new Integer[store.slotLimit()];
+        float[] scores = new float[store.slotLimit()];
+        store.scan(query, (slot, score) -> scores[slot] = score);
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+        return new HashSet<>(Arrays.asList(order).subList(0, k));
+    }
+
+    private static float[] nearby(float[] center, Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = center[i] + (float) random.nextGaussian() * 0.15f;
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
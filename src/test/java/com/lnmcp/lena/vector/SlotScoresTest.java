@@ -0,0 +1,65 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlotScoresTest {
+
+    @Test
+    public void testAddGrowsPastExpectedSize() {
+        SlotScores scores = new SlotScores(0);
+        for (int i = 0; i < 100; i++) {
+            scores.add(i * 2, i / 100.0f);
+        }
+        assertEquals(100, scores.size());
+        assertEquals(198, scores.slot(99));
+        assertEquals(0.99f, scores.score(99), 1e-6f);
+    }
+
+    @Test
+    public void testResolveIdsSkipsFreedSlots() {
+        VectorStore store = new VectorStore();
+        store.put("a#0", new float[]{1.0f, 0.0f});
+        store.put("b#0", new float[]{0.0f, 1.0f});
+        store.put("c#0", new float[]{1.0f, 1.0f});
+
+        SlotScores scores = new SlotScores(3);
+        store.scan(new float[]{1.0f, 0.0f}, scores::add);
+        store.remove("b#0");
+
+        String[] ids = scores.resolveIds(store);
+        assertEquals(3, ids.length);
+        assertEquals("a#0", ids[0]);
+        assertNull(ids[1]);
+        assertEquals("c#0", ids[2]);
+    }
+
+    @Test
+    public void testPartitionedScanResolvesIdsPerPartition() {
+        VectorStore store = new VectorStore();
+        for (int i = 0; i < 500; i++) {
+            store.put("doc" + i, new float[]{i, 1.0f});
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Each partition of 32 slots resolves its own ids; the results are concatenated
+            int[] resolved = new PartitionedScan(pool, 32).scan(store, new float[]{1.0f, 0.0f},
+                    () -> new SlotScores(32), SlotScores::add,
+                    partial -> {
+                        String[] ids = partial.resolveIds(store);
+                        for (String id : ids) {
+                            assertNotNull(id);
+                        }
+                        return new int[]{ids.length};
+                    },
+                    (left, right) -> new int[]{left[0] + right[0]});
+            assertEquals(500, resolved[0]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorMathTest {
+
+    @Test
+    public void testKernelMatchesBootLayer() {
+        boolean modulePresent = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        assertEquals(modulePresent, VectorMath.isSimdEnabled());
+
+        // The build runs this test with and without the module; make sure each run got the JVM it expects
+        String expected = System.getProperty("lena.vector.expect-simd");
+        if (expected != null) {
+            assertEquals(Boolean.parseBoolean(expected), VectorMath.isSimdEnabled());
+        }
+    }
+
+    @Test
+    public void testDotProductsMatchScalarLoop() {
+        ScalarDotProductKernel scalar = new ScalarDotProductKernel();
+        Random random = new Random(42);
+        // Lengths on both sides of every lane count, so both the vector loop and the tail run
+        for (int length = 0; length <= 67; length++) {
+            float[] a = new float[length + 3];
+            float[] b = new float[length + 5];
+            byte[] codesA = new byte[length + 3];
+            byte[] codesB = new byte[length + 5];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = random.nextFloat() * 2.0f - 1.0f;
+                codesA[i] = (byte) (random.nextInt(255) - 127);
+            }
+            for (int i = 0; i < b.length; i++) {
+                b[i] = random.nextFloat() * 2.0f - 1.0f;
+                codesB[i] = (byte) (random.nextInt(255) - 127);
+            }
+
+            assertEquals(scalar.dot(a, 3, b, 5, length), VectorMath.dot(a, 3, b, 5, length), 1e-4f);
+            assertEquals(scalar.dot(codesA, 3, codesB, 5, length), VectorMath.dot(codesA, 3, codesB, 5, length));
+
+            float[] query = new float[length];
+            System.arraycopy(a, 0, query, 0, length);
+            assertEquals(scalar.dot(query, 0, codesB, 5, length), VectorMath.dot(query, codesB, 5), 1e-2f);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.lnmcp.lena.vector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VectorStoreTest {
+
+    @Test
+    public void testPutGetAndRemove() {
+        VectorStore store = new VectorStore();
+
+        int slot = store.put("doc1.pdf", new float[]{1.0f, 0.0f, 0.0f});
+        assertEquals(1, store.size());
+        assertEquals(3, store.dimension());
+        assertEquals(slot, store.slotOf("doc1.pdf"));
+        assertEquals("doc1.pdf", store.idAt(slot));
+        assertArrayEquals(new float[]{1.0f, 0.0f, 0.0f}, store.get("doc1.pdf"));
+
+        // Replacing an id keeps its slot
+        assertEquals(slot, store.put("doc1.pdf", new float[]{0.0f, 1.0f, 0.0f}));
+        assertArrayEquals(new float[]{0.0f, 1.0f, 0.0f}, store.get("doc1.pdf"));
+
+        assertTrue(store.remove("doc1.pdf"));
+        assertFalse(store.remove("doc1.pdf"));
+        assertEquals(-1, store.slotOf("doc1.pdf"));
+        assertNull(store.get("doc1.pdf"));
+
+        // Freed slots are reused
+        assertEquals(slot, store.put("doc2.pdf", new float[]{0.0f, 0.0f, 1.0f}));
+    }
+
+    @Test
+    public void testDimensionMismatchIsRejected() {
+        VectorStore store = new VectorStore();
+        store.put("doc1.pdf", new float[]{1.0f, 0.0f});
+
+        assertThrows(IllegalArgumentException.class, () -> store.put("doc2.pdf", new float[]{1.0f, 0.0f, 0.0f}));
+    }
+
+    @Test
+    public void testScanScoresEveryStoredVector() {
+        VectorStore store = new VectorStore();
+        for (int i = 0; i < 200; i++) {
+            store.put("doc" + i, new float[]{i, 1.0f});
+        }
+        store.remove("doc0");
+
+        Map<String, Float> scores = new HashMap<>();
+        store.scan(new float[]{1.0f, 0.0f}, (slot, score) -> scores.put(store.idAt(slot), score));
+
+        assertEquals(199, scores.size());
+        assertFalse(scores.containsKey("doc0"));
+        assertEquals(VectorMath.cosine(new float[]{1.0f, 0.0f}, new float[]{5.0f, 1.0f}), scores.get("doc5"), 1e-6f);
+    }
+
+    @Test
+    public void testInt8ScoresApproximateFloatScores() {
+        VectorStore exact = new VectorStore();
+        VectorStore quantized = new VectorStore(VectorPrecision.INT8, null);
+        Random random = new Random(42);
+        for (int i = 0; i < 300; i++) {
+            float[] vector = randomVector(random, 96);
+            exact.put("doc" + i, vector);
+            quantized.put("doc" + i, vector);
+        }
+        float[] query = randomVector(random, 96);
+
+        Map<String, Float> exactScores = new HashMap<>();
+        exact.scan(query, (slot, score) -> exactScores.put(exact.idAt(slot), score));
+        Map<String, Float> quantizedScores = new HashMap<>();
+        quantized.scan(query, (slot, score) -> quantizedScores.put(quantized.idAt(slot), score));
+
+        assertEquals(300, quantizedScores.size());
+        float[] unitQuery = VectorMath.normalize(query);
+        for (Map.Entry<String, Float> entry : exactScores.entrySet()) {
+            int slot = quantized.slotOf(entry.getKey());
+            float expected = entry.getValue();
+            assertEquals(expected, quantizedScores.get(entry.getKey()), 0.02f);
+            assertEquals(expected, quantized.score(slot, unitQuery), 0.02f);
+            assertEquals(expected, quantized.exactScore(slot, unitQuery), 1e-5f);
+        }
+        assertEquals(exact.similarity(0, 1), quantized.similarity(0, 1), 0.02f);
+        assertArrayEquals(exact.get("doc7"), quantized.get("doc7"), 1e-6f);
+        quantized.close();
+    }
+
+    @Test
+    public void testPartitionedScanMatchesSequentialScan() {
+        VectorStore store = new VectorStore();
+        Random random = new Random(3);
+        for (int i = 0; i < 1000; i++) {
+            store.put("doc" + i, randomVector(random, 32));
+        }
+        store.remove("doc10");
+        float[] query = randomVector(random, 32);
+
+        Map<Integer, Float> sequential = new HashMap<>();
+        store.scan(query, sequential::put);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Map<Integer, Float> parallel = new PartitionedScan(pool, 64).scan(store, query, HashMap::new,
+                    (partial, slot, score) -> partial.put(slot, score),
+                    (left, right) -> {
+                        left.putAll(right);
+                        return left;
+                    });
+            assertEquals(sequential, parallel);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testGrowthStopsAtLargestSlab() {
+        // 768 dimensions: doubling past 2^21 slots would overflow slot * dimension
+        int limit = (Integer.MAX_VALUE - 8) / 768;
+        assertEquals(64, VectorStore.grownCapacity(0, limit));
+        assertEquals(1 << 21, VectorStore.grownCapacity(1 << 20, limit));
+        assertEquals(limit, VectorStore.grownCapacity(1 << 21, limit));
+        assertThrows(IllegalStateException.class, () -> VectorStore.grownCapacity(limit, limit));
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}